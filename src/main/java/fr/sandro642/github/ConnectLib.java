@@ -2,15 +2,25 @@ package fr.sandro642.github;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import fr.sandro642.github.api.Codecs;
+import fr.sandro642.github.api.Compression;
 import fr.sandro642.github.enums.LangType;
 import fr.sandro642.github.enums.lang.CategoriesType;
 import fr.sandro642.github.hook.HookManager;
 import fr.sandro642.github.hook.LangSupport;
 import fr.sandro642.github.hook.MCSupport;
+import fr.sandro642.github.limit.AdmissionController;
+import fr.sandro642.github.limit.MemoryBudget;
+import fr.sandro642.github.limit.RateLimiterManager;
+import fr.sandro642.github.limit.RouteGroupManager;
 import fr.sandro642.github.log.Logger;
 import fr.sandro642.github.log.Logs;
+import fr.sandro642.github.metrics.RouteMetrics;
 import fr.sandro642.github.misc.*;
+import fr.sandro642.github.outbox.Outbox;
+import fr.sandro642.github.jobs.IdempotencyWindow;
 import fr.sandro642.github.jobs.JobGetInfos;
+import fr.sandro642.github.jobs.PollingEngine;
 import fr.sandro642.github.enums.ResourceType;
 import fr.sandro642.github.spring.Application;
 import fr.sandro642.github.update.RetrieveLastVersion;
@@ -35,6 +45,15 @@ import java.util.*;
  * @see ConnectLib#HookManager()
  * @see ConnectLib#LangSupport()
  * @see ConnectLib#LangManager()
+ * @see ConnectLib#AdmissionController()
+ * @see ConnectLib#RouteGroupManager()
+ * @see ConnectLib#RateLimiterManager()
+ * @see ConnectLib#MemoryBudget()
+ * @see ConnectLib#IdempotencyWindow()
+ * @see ConnectLib#Outbox()
+ * @see ConnectLib#PollingEngine()
+ * @see ConnectLib#Compression()
+ * @see ConnectLib#Codecs()
  */
 
 public class ConnectLib {
@@ -113,6 +132,13 @@ public class ConnectLib {
             if (yamlRoutes != null) {
                 ConnectLib.routes.putAll(yamlRoutes);
             }
+
+            RouteGroupManager().load(yamlUtils.getSection("groups"));
+            RateLimiterManager().load(yamlUtils.getSection("rateLimits"));
+            MemoryBudget().load(yamlUtils.getSection("memoryBudget"));
+            Outbox().load(yamlUtils.getSection("outbox"));
+            Compression().load(yamlUtils.getSection("compression"));
+            Codecs().load(yamlUtils.getSection("formats"));
         } catch (Exception e) {
             Logger().ERROR(langManager.getMessage(CategoriesType.CONNECTLIB_CLASS, "initialise.catcherror", Map.of("exception", e.getMessage())));
         }
@@ -356,6 +382,86 @@ public class ConnectLib {
         return langManager;
     }
 
+    /**
+     * Return the shared instance of AdmissionController.
+     * @return AdmissionController instance
+     */
+    public AdmissionController AdmissionController() {
+        return AdmissionController.getInstance();
+    }
+
+    /**
+     * Return the instance of RouteGroupManager.
+     * @return RouteGroupManager instance
+     */
+    public RouteGroupManager RouteGroupManager() {
+        return RouteGroupManager.getInstance();
+    }
+
+    /**
+     * Return the instance of RateLimiterManager.
+     * @return RateLimiterManager instance
+     */
+    public RateLimiterManager RateLimiterManager() {
+        return RateLimiterManager.getInstance();
+    }
+
+    /**
+     * Return the instance of MemoryBudget.
+     * @return MemoryBudget instance
+     */
+    public MemoryBudget MemoryBudget() {
+        return MemoryBudget.getInstance();
+    }
+
+    /**
+     * Return the instance of IdempotencyWindow.
+     * @return IdempotencyWindow instance
+     */
+    public IdempotencyWindow IdempotencyWindow() {
+        return IdempotencyWindow.getInstance();
+    }
+
+    /**
+     * Return the instance of Outbox.
+     * @return Outbox instance
+     */
+    public Outbox Outbox() {
+        return Outbox.getInstance();
+    }
+
+    /**
+     * Return the instance of PollingEngine.
+     * @return PollingEngine instance
+     */
+    public PollingEngine PollingEngine() {
+        return PollingEngine.getInstance();
+    }
+
+    /**
+     * Return the instance of Compression.
+     * @return Compression instance
+     */
+    public Compression Compression() {
+        return Compression.getInstance();
+    }
+
+    /**
+     * Return the instance of Codecs.
+     * @return Codecs instance
+     */
+    public Codecs Codecs() {
+        return Codecs.getInstance();
+    }
+
+    /**
+     * Return the instance of RouteMetrics.
+     * @return RouteMetrics instance
+     */
+    public RouteMetrics RouteMetrics() {
+        return RouteMetrics.getInstance();
+    }
+
     /**
      * Return the instance of Application.
      * @return Application instance
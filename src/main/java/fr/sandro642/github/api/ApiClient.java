@@ -1,19 +1,58 @@
 package fr.sandro642.github.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.FormatType;
+import fr.sandro642.github.enums.MethodType;
 import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.metrics.RouteMetrics;
+import fr.sandro642.github.provider.CodecProvider;
+import fr.sandro642.github.provider.ProgressListener;
 import fr.sandro642.github.spring.controller.DataController;
 import fr.sandro642.github.spring.dto.Request;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
-
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 /**
  * ApiClient is a class that provides methods to interact with the ConnectLib API.
- * It extends ApiFactory and uses WebClient to make HTTP requests.
+ * It uses WebClient to make HTTP requests and emits every response as its own immutable ApiFactory,
+ * so a client holds no per-call state and can be shared between threads and calls.
  * This class supports various HTTP methods including GET, POST, PUT, PATCH, and DELETE.
  * It handles the API responses and errors, logging them appropriately.
  *
@@ -21,7 +60,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * @version 1.0
  */
 
-public class ApiClient extends ApiFactory {
+public class ApiClient {
 
     /**
      * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
@@ -35,22 +74,43 @@ public class ApiClient extends ApiFactory {
     private final WebClient webClient;
 
     /**
-     * lastResponse is an AtomicReference that holds the last response received from the API.
-     * It is used to store the response for later retrieval or processing.
+     * baseUrl is a string that holds the base URL for the API.
+     * It is initialized in the constructor and used for making requests.
      */
-    private final AtomicReference<ApiFactory> lastResponse = new AtomicReference<>();
+    private final String baseUrl;
 
     /**
-     * response is an instance of ApiFactory that is used to parse and store the raw JSON response from the API.
-     * It provides methods to handle the response data.
+     * Wire format of the request bodies, also asked for in the Accept header of the calls.
      */
-    private final ApiFactory apiFactory = new ApiFactory();
+    private CodecProvider codec = FormatType.JSON;
 
     /**
-     * baseUrl is a static string that holds the base URL for the API.
-     * It is initialized in the constructor and used for making requests.
+     * Size of the chunks read from a file uploaded with a progress listener.
+     */
+    private static final int UPLOAD_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Size in bytes from which request bodies are compressed with gzip, or -1 to never compress them.
      */
-    private static String baseUrl;
+    private int compressAbove = -1;
+
+    /**
+     * Paths kept when parsing the responses, null to parse them whole.
+     */
+    private Projection projection;
+
+    /**
+     * Name of the route in the route table, used to tag the calls on the dashboard and in the metrics.
+     */
+    private String routeName;
+
+    /**
+     * HttpClient of the clients on the shared connection pool, instrumented to time the phases of the calls.
+     * It is shared so that its connections are pooled together.
+     * Compression is left to Compression rather than to Netty: exchange() alone asks for compressed responses
+     * and inflates them off the event loop, and downloads are sent without Accept-Encoding so a Range stays valid.
+     */
+    private static final HttpClient DEFAULT_HTTP_CLIENT = ResponseTimings.instrument(HttpClient.create().compress(false));
 
     /**
      * Constructor for ApiClient.
@@ -58,7 +118,7 @@ public class ApiClient extends ApiFactory {
      * If the base URL is not found, it throws a RuntimeException.
      */
     public ApiClient(String baseUrlLambda) {
-        baseUrl = baseUrlLambda;
+        this.baseUrl = baseUrlLambda;
 
         if (baseUrl == null) {
             connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "construct.urlbase"));
@@ -66,45 +126,86 @@ public class ApiClient extends ApiFactory {
 
         this.webClient = WebClient.builder()
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(DEFAULT_HTTP_CLIENT))
                 .build();
     }
 
+    /**
+     * Constructor for ApiClient using a dedicated connection pool.
+     * It is used for the routes of a route group, so their connections are isolated from every other route.
+     * @param baseUrlLambda the base URL of the API.
+     * @param connectionProvider the connection pool to use.
+     */
+    public ApiClient(String baseUrlLambda, ConnectionProvider connectionProvider) {
+        this.baseUrl = baseUrlLambda;
+
+        if (baseUrl == null) {
+            connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "construct.urlbase"));
+        }
+
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(ResponseTimings.instrument(HttpClient.create(connectionProvider).compress(false))))
+                .build();
+    }
+
+    /**
+     * Compress the request bodies of this client with gzip once they reach a size.
+     * The server must accept a gzip Content-Encoding on the routes called.
+     * @param threshold the size in bytes from which bodies are compressed, or a negative value to never compress them.
+     * @return ApiClient for chaining
+     */
+    public ApiClient compressRequestsAbove(int threshold) {
+        this.compressAbove = threshold < 0 ? -1 : threshold;
+        return this;
+    }
+
+    /**
+     * Set the wire format of this client: request bodies are encoded with it and responses are asked in it,
+     * with JSON as a fallback. Responses are decoded according to their Content-Type whatever the format asked.
+     * @param codec the format, JSON if null.
+     * @return ApiClient for chaining
+     */
+    public ApiClient codec(CodecProvider codec) {
+        this.codec = codec != null ? codec : FormatType.JSON;
+        return this;
+    }
+
+    /**
+     * Parse only part of the responses of this client: values outside the projection are skipped while parsing.
+     * @param projection the paths to keep, null to parse the responses whole.
+     * @return ApiClient for chaining
+     */
+    public ApiClient project(Projection projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    /**
+     * Tag the calls of this client with the name of their route in the route table rather than with the path called,
+     * whose parameters are substituted, so the dashboard and the metrics group the calls of a route together.
+     * @param routeName the name of the route, null to tag the calls with the path called.
+     * @return ApiClient for chaining
+     */
+    public ApiClient routeName(String routeName) {
+        this.routeName = routeName;
+        return this;
+    }
+
+    /**
+     * Get the tag of a call: the name of its route if known, the path called otherwise.
+     */
+    private String tagOf(String path) {
+        return routeName != null ? routeName : path;
+    }
+
     /**
      * Method to call the API with a GET request.
      * @param routeName Name of the route to call.
      * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
      */
     public Mono<ApiFactory> callAPIGet(String routeName) {
-        connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.get", Map.of("routename", routeName)));
-
-        Request r = DataController.getInstance().createRequest(routeName, baseUrl);
-
-        record ResponseData(int statusCode, String body) {}
-
-        return webClient.get()
-                .uri(routeName)
-                .exchangeToMono(response ->
-                        response.bodyToMono(String.class)
-                                .map(rawJson -> new ResponseData(response.statusCode().value(), rawJson))
-                )
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnNext(responseData -> {
-                    connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().getName()));
-
-                    String newStatus = (responseData.statusCode() >= 200 && responseData.statusCode() < 300) ? "success" : "error";
-                    try {
-                        DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
-                    } catch (Exception e) {
-                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "GET", "exception", e.getMessage())));
-                    }
-                })
-                .map(responseData -> {
-                    apiFactory.setStatusCode(responseData.statusCode());
-                    apiFactory.parseFromRawJson(responseData.body);
-                    return apiFactory;
-                })
-                .doOnNext(lastResponse::set)
-                .doOnError(error -> connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "GET", "exception", error.getMessage()))));
+        return callAPI(MethodType.GET, routeName, null);
     }
 
     /**
@@ -114,37 +215,7 @@ public class ApiClient extends ApiFactory {
      * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
      */
     public Mono<ApiFactory> callAPIPost(String routeName, Map<String, Object> body) {
-        connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.post", Map.of("routename", routeName)));
-
-        Request r = DataController.getInstance().createRequest(routeName, baseUrl);
-
-        record ResponseData(int statusCode, String body) {}
-
-        return webClient.post()
-                .uri(routeName)
-                .bodyValue(body != null ? body : Map.of())
-                .exchangeToMono(response ->
-                        response.bodyToMono(String.class)
-                                .map(rawJson -> new ResponseData(response.statusCode().value(), rawJson))
-                )
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnNext(responseData -> {
-                    connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().getName()));
-
-                    String newStatus = (responseData.statusCode() >= 200 && responseData.statusCode() < 300) ? "success" : "error";
-                    try {
-                        DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
-                    } catch (Exception e) {
-                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "GET", "exception", e.getMessage())));
-                    }
-                })
-                .map(responseData -> {
-                    apiFactory.setStatusCode(responseData.statusCode());
-                    apiFactory.parseFromRawJson(responseData.body());
-                    return apiFactory;
-                })
-                .doOnNext(lastResponse::set)
-                .doOnError(error -> connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "POST", "exception", error.getMessage()))));
+        return callAPI(MethodType.POST, routeName, body);
     }
 
     /**
@@ -154,37 +225,7 @@ public class ApiClient extends ApiFactory {
      * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
      */
     public Mono<ApiFactory> callAPIPut(String routeName, Map<String, Object> body) {
-        connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.put", Map.of("routename", routeName)));
-
-        Request r = DataController.getInstance().createRequest(routeName, baseUrl);
-
-        record ResponseData(int statusCode, String body) {}
-
-        return webClient.put()
-                .uri(routeName)
-                .bodyValue(body != null ? body : Map.of())
-                .exchangeToMono(response ->
-                        response.bodyToMono(String.class)
-                                .map(rawJson -> new ResponseData(response.statusCode().value(), rawJson))
-                )
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnNext(responseData -> {
-                    connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().getName()));
-
-                    String newStatus = (responseData.statusCode() >= 200 && responseData.statusCode() < 300) ? "success" : "error";
-                    try {
-                        DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
-                    } catch (Exception e) {
-                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "GET", "exception", e.getMessage())));
-                    }
-                })
-                .map(responseData -> {
-                    apiFactory.setStatusCode(responseData.statusCode());
-                    apiFactory.parseFromRawJson(responseData.body());
-                    return apiFactory;
-                })
-                .doOnNext(lastResponse::set)
-                .doOnError(error -> connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "PUT", "exception", error.getMessage()))));
+        return callAPI(MethodType.PUT, routeName, body);
     }
 
     /**
@@ -194,74 +235,552 @@ public class ApiClient extends ApiFactory {
      * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
      */
     public Mono<ApiFactory> callAPIPatch(String routeName, Map<String, Object> body) {
-        connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.patch", Map.of("routename", routeName)));
+        return callAPI(MethodType.PATCH, routeName, body);
+    }
 
-        Request r = DataController.getInstance().createRequest(routeName, baseUrl);
+    /**
+     * Method to call the API with a DELETE request.
+     * @param routeName Name of the route to call.
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    public Mono<ApiFactory> callAPIDelete(String routeName) {
+        return callAPI(MethodType.DELETE, routeName, null);
+    }
 
-        record ResponseData(int statusCode, String body) {}
+    /**
+     * Method to call the API with any supported HTTP method.
+     * The returned Mono is lazy: nothing is sent and no request is tracked until it is subscribed.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    public Mono<ApiFactory> callAPI(MethodType methodType, String routeName, Map<String, Object> body) {
+        return callAPI(methodType, routeName, body, Map.of());
+    }
 
-        return webClient.patch()
-                .uri(routeName)
-                .bodyValue(body != null ? body : Map.of())
-                .exchangeToMono(response ->
-                        response.bodyToMono(String.class)
-                                .map(rawJson -> new ResponseData(response.statusCode().value(), rawJson))
-                )
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnNext(responseData -> {
-                    connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().getName()));
-
-                    String newStatus = (responseData.statusCode() >= 200 && responseData.statusCode() < 300) ? "success" : "error";
-                    try {
-                        DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
-                    } catch (Exception e) {
-                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "GET", "exception", e.getMessage())));
-                    }
-                })
-                .map(responseData -> {
-                    apiFactory.setStatusCode(responseData.statusCode());
-                    apiFactory.parseFromRawJson(responseData.body());
-                    return apiFactory;
-                })
-                .doOnNext(lastResponse::set)
-                .doOnError(error -> connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "PATCH", "exception", error.getMessage()))));
+    /**
+     * Method to call the API with any supported HTTP method.
+     * The returned Mono is lazy: nothing is sent and no request is tracked until it is subscribed.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @param headers Headers added to the request, e.g. the idempotency key.
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    public Mono<ApiFactory> callAPI(MethodType methodType, String routeName, Map<String, Object> body, Map<String, String> headers) {
+        // The body is serialized once its bytes are reserved: until then only an estimate is held, adjusted to the real size.
+        // The bytes of a PreparedBody belong to it and are shared by every send, so they are not counted per request.
+        boolean counted = !(body instanceof PreparedBody) && (methodType == MethodType.POST || methodType == MethodType.PUT || methodType == MethodType.PATCH);
+        long estimate = counted ? connectLib.MemoryBudget().getDefaultResponseBytes() : 0;
+
+        return exchange(methodType, routeName, estimate, () -> {
+            byte[] encoded = encode(methodType, body);
+            boolean gzip = encoded != null && compressAbove >= 0 && encoded.length >= compressAbove;
+            Map<String, String> requestHeaders = headers;
+            if (gzip) {
+                encoded = body instanceof PreparedBody prepared ? prepared.bytes(codec, true) : connectLib.Compression().compress(encoded);
+                requestHeaders = new HashMap<>(headers);
+                requestHeaders.put(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+
+            long sentBytes = encoded == null ? 0 : encoded.length;
+            if (encoded != null && body instanceof PreparedBody prepared) {
+                return new Outgoing(prepare(methodType, routeName, prepared, gzip, encoded.length, requestHeaders), 0, sentBytes);
+            }
+            return new Outgoing(prepare(methodType, routeName, encoded, requestHeaders), counted ? sentBytes : 0, sentBytes);
+        });
     }
 
     /**
-     * Method to call the API with a DELETE request.
+     * Method to upload a file and get the JSON response.
+     * Without a progress listener the file is handed to the connection as a whole, so it is sent with zero-copy
+     * (sendfile) on plain HTTP connections. With a listener it is read in chunks of 64 KiB to report the progress.
+     * The returned Mono is lazy: nothing is sent until it is subscribed, and cancelling it closes the exchange.
+     * @param methodType HTTP method to use, usually POST or PUT.
      * @param routeName Name of the route to call.
+     * @param file File to send as the body.
+     * @param contentType Content type of the body, can be null to guess it from the file name.
+     * @param progress Listener of the progress, can be null.
+     * @param headers Headers added to the request.
      * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
      */
-    public Mono<ApiFactory> callAPIDelete(String routeName) {
-        connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.delete", Map.of("routename", routeName)));
+    public Mono<ApiFactory> uploadAPI(MethodType methodType, String routeName, Path file, MediaType contentType,
+                                      ProgressListener progress, Map<String, String> headers) {
+        return Mono.defer(() -> {
+            if (progress == null) {
+                return upload(methodType, routeName, BodyInserters.fromResource(new FileSystemResource(file)), contentType, headers);
+            }
+
+            long total;
+            try {
+                total = Files.size(file);
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+            Flux<DataBuffer> chunks = DataBufferUtils.read(file, DefaultDataBufferFactory.sharedInstance, UPLOAD_CHUNK_SIZE);
+            Map<String, String> withLength = new HashMap<>(headers);
+            withLength.put(HttpHeaders.CONTENT_LENGTH, String.valueOf(total));
+            return upload(methodType, routeName, BodyInserters.fromDataBuffers(count(chunks, 0L, total, progress)),
+                    contentType != null ? contentType : MediaTypeFactory.getMediaType(file.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM),
+                    withLength);
+        });
+    }
+
+    /**
+     * Method to upload a stream of buffers and get the JSON response.
+     * The buffers are written to the connection as they are produced and are released once sent,
+     * so the body is never held in memory as a whole. The request uses chunked transfer encoding.
+     * @param methodType HTTP method to use, usually POST or PUT.
+     * @param routeName Name of the route to call.
+     * @param chunks Buffers of the body, subscribed once the request is sent.
+     * @param contentType Content type of the body, application/octet-stream if null.
+     * @param progress Listener of the progress, can be null. The total is unknown and reported as -1.
+     * @param headers Headers added to the request.
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    public Mono<ApiFactory> uploadAPI(MethodType methodType, String routeName, Publisher<DataBuffer> chunks, MediaType contentType,
+                                      ProgressListener progress, Map<String, String> headers) {
+        return upload(methodType, routeName, BodyInserters.fromDataBuffers(count(Flux.from(chunks), 0L, -1L, progress)),
+                contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM, headers);
+    }
+
+    /**
+     * Method to upload a multipart/form-data body and get the JSON response.
+     * A Path value is sent as a file part, a Publisher of DataBuffer as a streamed part, and any other value as a plain part
+     * (a String as text, anything else as JSON). Parts are written one after the other as they are produced.
+     * @param methodType HTTP method to use, usually POST or PUT.
+     * @param routeName Name of the route to call.
+     * @param parts Parts of the body, by name, sent in iteration order.
+     * @param headers Headers added to the request.
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<ApiFactory> uploadMultipartAPI(MethodType methodType, String routeName, Map<String, Object> parts, Map<String, String> headers) {
+        return Mono.defer(() -> {
+            MultipartBodyBuilder builder = new MultipartBodyBuilder();
+            parts.forEach((name, value) -> {
+                if (value instanceof Path path) {
+                    builder.part(name, new FileSystemResource(path))
+                            .contentType(MediaTypeFactory.getMediaType(path.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM));
+                } else if (value instanceof Publisher<?> publisher) {
+                    builder.asyncPart(name, (Publisher<DataBuffer>) publisher, DataBuffer.class)
+                            .filename(name)
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM);
+                } else {
+                    builder.part(name, value);
+                }
+            });
+            return upload(methodType, routeName, BodyInserters.fromMultipartData(builder.build()), MediaType.MULTIPART_FORM_DATA, headers);
+        });
+    }
+
+    /**
+     * Sends a request with a streamed body and parses its JSON response.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Inserter writing the body.
+     * @param contentType Content type of the body.
+     * @param headers Headers added to the request.
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    private Mono<ApiFactory> upload(MethodType methodType, String routeName, BodyInserter<?, ? super ClientHttpRequest> body,
+                                    MediaType contentType, Map<String, String> headers) {
+        // The body is streamed, so only the response is counted in the memory budget, and its size is not known for the metrics.
+        return exchange(methodType, routeName, 0, () -> new Outgoing(webClient.method(HttpMethod.valueOf(methodType.name()))
+                .uri(routeName)
+                .headers(httpHeaders -> headers.forEach(httpHeaders::set))
+                .contentType(contentType)
+                .body(body), 0, 0));
+    }
+
+    /**
+     * Request ready to be exchanged, with the size of its body.
+     * @param spec the request.
+     * @param payloadBytes Size of the request body held in memory, counted in the memory budget.
+     * @param sentBytes Size of the request body sent, counted in the metrics of the route.
+     */
+    private record Outgoing(WebClient.RequestHeadersSpec<?> spec, long payloadBytes, long sentBytes) {}
+
+    /**
+     * Sends a request and parses its JSON response, tracking it on the dashboard.
+     * @param methodType HTTP method used, for the logs.
+     * @param routeName Name of the route called.
+     * @param estimate Bytes reserved in the memory budget before the request is built, adjusted to its real payload once built.
+     * @param request Builds the request once the bytes are reserved.
+     * @return a Mono that emits the ApiFactory response containing the parsed JSON data.
+     */
+    private Mono<ApiFactory> exchange(MethodType methodType, String routeName, long estimate, Supplier<Outgoing> request) {
+        return Mono.defer(() -> {
+            connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call." + methodType.name().toLowerCase(), Map.of("routename", routeName)));
+
+            record ResponseData(int statusCode, Map<String, List<String>> headers, Body body) {}
+
+            // The request body and the buffered response are counted in the memory budget until the response is parsed.
+            return Mono.usingWhen(connectLib.MemoryBudget().reserve(estimate), lease -> {
+                Outgoing outgoing;
+                try {
+                    outgoing = request.get();
+                } catch (RuntimeException e) {
+                    return Mono.error(e);
+                }
+                long payloadBytes = outgoing.payloadBytes();
+                long sentBytes = outgoing.sentBytes();
+                lease.adjust(payloadBytes);
+
+                Request r = DataController.getInstance().createRequest(tagOf(routeName), routeName, baseUrl);
+                RouteMetrics.Stats stats = connectLib.RouteMetrics().of(methodType, tagOf(routeName));
+                ResponseTimings.Recorder recorder = new ResponseTimings.Recorder();
+
+                return outgoing.spec()
+                        .headers(httpHeaders -> {
+                            httpHeaders.set(HttpHeaders.ACCEPT_ENCODING, Compression.ACCEPT_ENCODING);
+                            if (codec != FormatType.JSON) {
+                                httpHeaders.set(HttpHeaders.ACCEPT, codec.getMediaType() + ", " + MediaType.APPLICATION_JSON_VALUE + ";q=0.9");
+                            }
+                        })
+                        .exchangeToMono(response ->
+                                lease.grow(response.headers().contentLength().orElse(connectLib.MemoryBudget().getDefaultResponseBytes()))
+                                        .then(readBody(response))
+                                        .map(body -> {
+                                            recorder.bodyReceived();
+                                            lease.adjust(payloadBytes + body.size());
+                                            return new ResponseData(response.statusCode().value(), response.headers().asHttpHeaders(), body);
+                                        })
+                        )
+                        .doOnNext(responseData -> {
+                            connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().getName()));
+
+                            String newStatus = (responseData.statusCode() >= 200 && responseData.statusCode() < 300) ? "success" : "error";
+                            try {
+                                DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
+                            } catch (Exception e) {
+                                connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", methodType.name(), "exception", e.getMessage())));
+                            }
+                        })
+                        .map(responseData -> {
+                            Body body = responseData.body();
+                            ApiFactory apiFactory = body.binary() != null
+                                    ? ApiFactory.ofBytes(responseData.statusCode(), responseData.headers(), recorder, body.binary(), body.codec(), projection)
+                                    : ApiFactory.ofJson(responseData.statusCode(), responseData.headers(), recorder, body.json(), projection);
+                            stats.record(responseData.statusCode(), apiFactory.getDuration().toNanos(), sentBytes, body.size());
+                            return apiFactory;
+                        })
+                        .doOnError(error -> stats.failed(recorder.elapsed(), sentBytes))
+                        .doOnCancel(() -> DataController.getInstance().updateRequestStatus(r.getId(), "error"))
+                        .contextWrite(context -> context.put(ResponseTimings.CONTEXT_KEY, recorder));
+            }, lease -> Mono.fromRunnable(lease::release))
+                    .doOnError(error -> connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", methodType.name(), "exception", String.valueOf(error.getMessage())))));
+        });
+    }
+
+    /**
+     * Body of a response: JSON text, or bytes in a binary format with the codec able to decode them.
+     * @param size the number of bytes of the body as received, once inflated.
+     */
+    private record Body(String json, byte[] binary, CodecProvider codec, long size) {}
+
+    /**
+     * Reads the body of a response, inflating it first if it is compressed.
+     * JSON is read as a string; other formats known to Codecs are kept as bytes for their codec.
+     * Inflating is CPU-bound, so it runs on the parallel scheduler rather than on the event loop.
+     * @param response The response.
+     * @return a Mono emitting the body.
+     */
+    private Mono<Body> readBody(ClientResponse response) {
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        String encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        CodecProvider format = connectLib.Codecs().codecFor(headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        boolean compressed = connectLib.Compression().isSupported(encoding);
+
+        Charset charset = response.headers().contentType().map(MediaType::getCharset).orElse(StandardCharsets.UTF_8);
+        Mono<byte[]> bytes = response.bodyToMono(byte[].class).defaultIfEmpty(new byte[0]);
+        if (compressed) {
+            bytes = bytes.publishOn(Schedulers.parallel())
+                    .map(body -> body.length == 0 ? body : connectLib.Compression().decompress(body, encoding));
+        }
+        return bytes.map(body -> format == FormatType.JSON ? new Body(new String(body, charset), null, format, body.length) : new Body(null, body, format, body.length));
+    }
+
+    /**
+     * Method to call a streaming route (newline-delimited JSON or server-sent events).
+     * Every element received is parsed into its own ApiFactory and emitted as soon as it arrives.
+     * The returned Flux is lazy: nothing is sent until it is subscribed, and cancelling it closes the exchange.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @return a Flux that emits one ApiFactory per streamed element.
+     */
+    public Flux<ApiFactory> streamAPI(MethodType methodType, String routeName, Map<String, Object> body) {
+        return streamAPI(methodType, routeName, body, Map.of());
+    }
+
+    /**
+     * Method to call a streaming route (newline-delimited JSON or server-sent events).
+     * Every element received is parsed into its own ApiFactory and emitted as soon as it arrives.
+     * The returned Flux is lazy: nothing is sent until it is subscribed, and cancelling it closes the exchange.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @param headers Headers added to the request, e.g. the idempotency key.
+     * @return a Flux that emits one ApiFactory per streamed element.
+     */
+    public Flux<ApiFactory> streamAPI(MethodType methodType, String routeName, Map<String, Object> body, Map<String, String> headers) {
+        return Flux.defer(() -> {
+            connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call." + methodType.name().toLowerCase(), Map.of("routename", routeName)));
+
+            Request r = DataController.getInstance().createRequest(tagOf(routeName), routeName, baseUrl);
+            RouteMetrics.Stats stats = connectLib.RouteMetrics().of(methodType, tagOf(routeName));
+            ResponseTimings.Recorder recorder = new ResponseTimings.Recorder();
+            byte[] payload = encode(methodType, body);
+            long sentBytes = payload == null ? 0 : payload.length;
+            AtomicInteger status = new AtomicInteger();
+            AtomicLong receivedBytes = new AtomicLong();
+
+            return prepare(methodType, routeName, payload, headers)
+                    .accept(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_JSON)
+                    .exchangeToFlux(response -> {
+                        int statusCode = response.statusCode().value();
+                        status.set(statusCode);
+                        Map<String, List<String>> responseHeaders = response.headers().asHttpHeaders();
+                        // The bytes are counted as they come off the connection, before being decoded into elements.
+                        return response.mutate()
+                                .body(chunks -> chunks.doOnNext(chunk -> receivedBytes.addAndGet(chunk.readableByteCount())))
+                                .build()
+                                .bodyToFlux(String.class)
+                                .filter(element -> !element.isBlank())
+                                .map(element -> ApiFactory.ofJson(statusCode, responseHeaders, recorder, element, projection));
+                    })
+                    .contextWrite(context -> context.put(ResponseTimings.CONTEXT_KEY, recorder))
+                    .doOnComplete(() -> {
+                        stats.record(status.get(), recorder.elapsed(), sentBytes, receivedBytes.get());
+                        DataController.getInstance().updateRequestStatus(r.getId(), "success");
+                    })
+                    .doOnCancel(() -> DataController.getInstance().updateRequestStatus(r.getId(), "error"))
+                    .doOnError(error -> {
+                        if (status.get() != 0) {
+                            stats.record(status.get(), recorder.elapsed(), sentBytes, receivedBytes.get());
+                        } else {
+                            stats.failed(recorder.elapsed(), sentBytes);
+                        }
+                        DataController.getInstance().updateRequestStatus(r.getId(), "error");
+                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", methodType.name(), "exception", error.getMessage())));
+                    });
+        });
+    }
 
-        Request r = DataController.getInstance().createRequest(routeName, baseUrl);
+    /**
+     * Method to download the body of a route straight to a file.
+     * The body is written chunk by chunk as it arrives, from the network buffers to the file, and is never held in memory.
+     * When resuming, the request asks for the bytes missing from the existing file with a Range header;
+     * if the server ignores it, the file is written again from the start.
+     * The returned Mono is lazy: nothing is sent until it is subscribed, and cancelling it closes the exchange.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @param target File to write.
+     * @param resume true to continue an incomplete file instead of replacing it.
+     * @param progress Listener of the progress, can be null.
+     * @return a Mono that emits the size of the file once the download is complete.
+     */
+    public Mono<Long> downloadAPI(MethodType methodType, String routeName, Map<String, Object> body, Path target, boolean resume, ProgressListener progress) {
+        return Mono.defer(() -> {
+            long existing;
+            try {
+                existing = resume && Files.exists(target) ? Files.size(target) : 0L;
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+
+            Map<String, String> headers = existing > 0 ? Map.of(HttpHeaders.RANGE, "bytes=" + existing + "-") : Map.of();
+
+            return transfer(methodType, routeName, body, headers, (response, chunks) -> {
+                int statusCode = response.statusCode().value();
+
+                if (statusCode == 416 && existing > 0) {
+                    // Nothing left to download: the file is already complete.
+                    return response.releaseBody().thenReturn(existing);
+                }
+
+                boolean partial = statusCode == 206 && existing > 0;
+                long offset = partial ? existing : 0L;
+                long total = partial ? totalOfContentRange(response.headers().header(HttpHeaders.CONTENT_RANGE))
+                        : response.headers().contentLength().orElse(-1L);
+
+                Flux<DataBuffer> counted = count(chunks, offset, total, progress);
+                OpenOption[] options = partial
+                        ? new OpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.WRITE}
+                        : new OpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING};
+
+                Mono<Void> written = Flux.using(
+                        () -> AsynchronousFileChannel.open(target, options),
+                        channel -> DataBufferUtils.write(counted, channel, offset).map(DataBufferUtils::release),
+                        channel -> {
+                            try {
+                                channel.close();
+                            } catch (IOException ignored) {
+                            }
+                        }).then();
+
+                return written.then(Mono.fromCallable(() -> Files.size(target)));
+            });
+        });
+    }
+
+    /**
+     * Method to download the body of a route straight to a channel, e.g. a FileChannel.
+     * The body is written chunk by chunk as it arrives and is never held in memory. The channel is not closed.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @param channel Channel to write.
+     * @param progress Listener of the progress, can be null.
+     * @return a Mono that emits the number of bytes written once the download is complete.
+     */
+    public Mono<Long> downloadAPI(MethodType methodType, String routeName, Map<String, Object> body, WritableByteChannel channel, ProgressListener progress) {
+        return transfer(methodType, routeName, body, Map.of(), (response, chunks) -> {
+            long total = response.headers().contentLength().orElse(-1L);
+            AtomicLong written = new AtomicLong();
+
+            return DataBufferUtils.write(count(chunks, 0L, total, progress), channel)
+                    .doOnNext(buffer -> written.addAndGet(buffer.readableByteCount()))
+                    .map(DataBufferUtils::release)
+                    .then(Mono.fromSupplier(written::get));
+        });
+    }
+
+    /**
+     * Sends a request whose response body is consumed as a stream of buffers, tracking it like any other call.
+     * Error statuses fail the Mono without reading the body.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request.
+     * @param headers Headers added to the request.
+     * @param consumer Consumes the response and its body.
+     * @return a Mono emitting the result of the consumer.
+     */
+    private <T> Mono<T> transfer(MethodType methodType, String routeName, Map<String, Object> body, Map<String, String> headers,
+                                 BiFunction<ClientResponse, Flux<DataBuffer>, Mono<T>> consumer) {
+        return Mono.defer(() -> {
+            connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call." + methodType.name().toLowerCase(), Map.of("routename", routeName)));
+
+            Request r = DataController.getInstance().createRequest(tagOf(routeName), routeName, baseUrl);
+            RouteMetrics.Stats stats = connectLib.RouteMetrics().of(methodType, tagOf(routeName));
+            long start = System.nanoTime();
+            byte[] payload = encode(methodType, body);
+            long sentBytes = payload == null ? 0 : payload.length;
+            AtomicInteger status = new AtomicInteger();
+            AtomicLong receivedBytes = new AtomicLong();
+
+            return prepare(methodType, routeName, payload, headers)
+                    .exchangeToMono(response -> {
+                        int statusCode = response.statusCode().value();
+                        status.set(statusCode);
+                        if (statusCode >= 400 && !(statusCode == 416 && headers.containsKey(HttpHeaders.RANGE))) {
+                            return response.releaseBody().then(Mono.error(new IllegalStateException("Transfer of " + routeName + " answered with status " + statusCode)));
+                        }
+                        return consumer.apply(response, response.bodyToFlux(DataBuffer.class).doOnNext(chunk -> receivedBytes.addAndGet(chunk.readableByteCount())));
+                    })
+                    .doOnSuccess(result -> {
+                        stats.record(status.get(), System.nanoTime() - start, sentBytes, receivedBytes.get());
+                        DataController.getInstance().updateRequestStatus(r.getId(), "success");
+                    })
+                    .doOnCancel(() -> DataController.getInstance().updateRequestStatus(r.getId(), "error"))
+                    .doOnError(error -> {
+                        if (status.get() != 0) {
+                            stats.record(status.get(), System.nanoTime() - start, sentBytes, receivedBytes.get());
+                        } else {
+                            stats.failed(System.nanoTime() - start, sentBytes);
+                        }
+                        DataController.getInstance().updateRequestStatus(r.getId(), "error");
+                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", methodType.name(), "exception", String.valueOf(error.getMessage()))));
+                    });
+        });
+    }
+
+    /**
+     * Reports the progress of a stream of buffers as they go through.
+     */
+    private Flux<DataBuffer> count(Flux<DataBuffer> chunks, long offset, long total, ProgressListener progress) {
+        if (progress == null) {
+            return chunks;
+        }
+        AtomicLong transferred = new AtomicLong(offset);
+        return chunks.doOnNext(buffer -> progress.onProgress(transferred.addAndGet(buffer.readableByteCount()), total));
+    }
 
-        record ResponseData(int statusCode, String body) {}
+    /**
+     * Reads the total size from a Content-Range header such as "bytes 100-199/1000".
+     */
+    private long totalOfContentRange(List<String> contentRange) {
+        if (contentRange.isEmpty()) return -1L;
+        String value = contentRange.get(0);
+        int slash = value.lastIndexOf('/');
+        try {
+            return slash < 0 ? -1L : Long.parseLong(value.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Serializes the body of the request, so its size is known before it is sent.
+     * @param methodType HTTP method to use.
+     * @param body Body of the request, only sent for POST, PUT and PATCH.
+     * @return the bytes of the body in the wire format of the client, or null if the method has no body.
+     * The bytes of a PreparedBody are cached by the body and must not be modified.
+     */
+    private byte[] encode(MethodType methodType, Map<String, Object> body) {
+        switch (methodType) {
+            case POST, PUT, PATCH:
+                if (body instanceof PreparedBody prepared) {
+                    return prepared.bytes(codec, false);
+                }
+                try {
+                    return codec.getMapper().writeValueAsBytes(body != null ? body : Map.of());
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Body of the request cannot be serialized to " + codec.getMediaType(), e);
+                }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Builds the WebClient request for the given method, route and body.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param payload Encoded bytes of the body, null for a request without body.
+     * @param headers Headers added to the request.
+     * @return the request ready to be exchanged.
+     */
+    private WebClient.RequestHeadersSpec<?> prepare(MethodType methodType, String routeName, byte[] payload, Map<String, String> headers) {
+        WebClient.RequestBodySpec spec = webClient.method(HttpMethod.valueOf(methodType.name()))
+                .uri(routeName)
+                .headers(httpHeaders -> headers.forEach(httpHeaders::set));
+
+        return payload == null ? spec : spec.contentType(MediaType.parseMediaType(codec.getMediaType())).bodyValue(payload);
+    }
+
+    /**
+     * Builds the WebClient request for a prepared body, written from the buffer it keeps instead of being encoded again.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Prepared body of the request.
+     * @param gzip true to send the gzip-compressed body.
+     * @param length Length of the encoded body.
+     * @param headers Headers added to the request.
+     * @return the request ready to be exchanged.
+     */
+    private WebClient.RequestHeadersSpec<?> prepare(MethodType methodType, String routeName, PreparedBody body, boolean gzip, long length, Map<String, String> headers) {
+        BodyInserter<PreparedBody, ClientHttpRequest> inserter = (request, context) ->
+                request.writeWith(Mono.fromSupplier(() -> body.buffer(request.bufferFactory(), codec, gzip)));
 
-        return webClient.delete()
+        return webClient.method(HttpMethod.valueOf(methodType.name()))
                 .uri(routeName)
-                .exchangeToMono(response ->
-                        response.bodyToMono(String.class)
-                                .map(rawJson -> new ResponseData(response.statusCode().value(), rawJson))
-                )
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnNext(responseData -> {
-                    connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().getName()));
-
-                    String newStatus = (responseData.statusCode() >= 200 && responseData.statusCode() < 300) ? "success" : "error";
-                    try {
-                        DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
-                    } catch (Exception e) {
-                        connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "GET", "exception", e.getMessage())));
-                    }
-                })
-                .map(responseData -> {
-                    apiFactory.setStatusCode(responseData.statusCode());
-                    apiFactory.parseFromRawJson(responseData.body());
-                    return apiFactory;
-                })
-                .doOnNext(lastResponse::set)
-                .doOnError(error -> connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", "DELETE", "exception", error.getMessage()))));
+                .headers(httpHeaders -> headers.forEach(httpHeaders::set))
+                .contentType(MediaType.parseMediaType(codec.getMediaType()))
+                .contentLength(length)
+                .body(inserter);
     }
 }
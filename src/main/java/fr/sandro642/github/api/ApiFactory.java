@@ -1,15 +1,26 @@
 package fr.sandro642.github.api;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.FormatType;
 import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.provider.CodecProvider;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * ApiFactory is a class that provides methods to parse raw JSON data and retrieve specific data from it.
- * It uses Jackson's ObjectMapper to convert JSON strings into Java objects.
+ * A JSON response is indexed into a JsonTape and its values are only decoded when they are read,
+ * so reading a few fields of a large response stays cheap; the whole map is built on the first call to getRawData().
+ * Binary formats are decoded with Jackson's ObjectMapper.
+ * Each response is its own immutable ApiFactory holding its status, headers, timings and body,
+ * so it can be cached and read from any number of threads.
  * This class is designed to handle API responses and allows for easy access to the parsed data.
  *
  * @author Sandro642
@@ -21,54 +32,249 @@ public class ApiFactory {
     /**
      * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
      */
-    private ConnectLib connectLib = new ConnectLib();
+    private final ConnectLib connectLib = new ConnectLib();
 
     /**
-     * rawData is a Map that holds the parsed JSON data.
-     * It is populated by the parseFromRawJson method.
+     * statusCode is an integer that holds the HTTP status code of the API response.
+     */
+    private final int statusCode;
+
+    /**
+     * headers is a case-insensitive, unmodifiable Map that holds the HTTP headers of the API response.
+     */
+    private final Map<String, List<String>> headers;
+
+    /**
+     * timings is the breakdown of the time taken by the call, from acquiring a connection to decoding the body.
      */
-    private Map<String, Object> rawData;
+    private final ResponseTimings timings;
 
     /**
      * rawJson is a String that holds the raw JSON data.
      * It is used for logging and debugging purposes.
      */
-    private String rawJson;
+    private final String rawJson;
 
     /**
-     * statusCode is an integer that holds the HTTP status code of the API response.
-     * It can be set using the setStatusCode method.
+     * rawBody is a byte array that holds the body of a response received in a binary format such as CBOR.
+     * It is null for a JSON response.
+     */
+    private final byte[] rawBody;
+
+    /**
+     * tape is the index of a JSON response, null for a binary response, an empty body, a JSON too large to index
+     * or if the JSON is invalid.
      */
-    private int statusCode;
+    private final JsonTape tape;
 
     /**
-     * Default constructor for ApiFactory.
-     * Initializes the rawData and rawJson fields to null.
+     * rawData is an unmodifiable Map that holds the parsed data.
+     * It is decoded up front for a binary response or a JSON too large to index, and built from the tape
+     * the first time it is needed for JSON.
      */
-    protected void parseFromRawJson(String rawJson) {
+    private volatile Map<String, Object> rawData;
+
+    private ApiFactory(int statusCode, Map<String, List<String>> headers, ResponseTimings timings, String rawJson, byte[] rawBody, JsonTape tape, Map<String, Object> rawData) {
+        Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            headers.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+        }
+        this.statusCode = statusCode;
+        this.headers = Collections.unmodifiableMap(copy);
+        this.timings = timings;
         this.rawJson = rawJson;
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            this.rawData = mapper.readValue(rawJson, new TypeReference<>() {});
-        } catch (Exception e) {
-            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "parsefromrawjson.error", Map.of("json", rawJson, "exception", e.getMessage())));
+        this.rawBody = rawBody;
+        this.tape = tape;
+        this.rawData = rawData;
+    }
+
+    /**
+     * Create the response of a JSON body, keeping only the values of a projection.
+     * An empty body, such as the one of a 204, gives a response without data.
+     * @param statusCode the HTTP status code.
+     * @param headers the HTTP headers.
+     * @param recorder the phases of the call, null for a response built outside of a call.
+     * @param rawJson the body.
+     * @param projection the paths to keep, null to parse the whole body.
+     * @return the ApiFactory
+     */
+    static ApiFactory ofJson(int statusCode, Map<String, List<String>> headers, ResponseTimings.Recorder recorder, String rawJson, Projection projection) {
+        long decodeStart = System.nanoTime();
+        JsonTape tape = null;
+        Map<String, Object> rawData = null;
+        if (rawJson != null && !rawJson.isBlank()) {
+            try {
+                try {
+                    JsonTape parsed = JsonTape.parse(rawJson, projection);
+                    if (parsed.type(0) != JsonTape.OBJECT) {
+                        throw new IllegalArgumentException("JSON response is not an object");
+                    }
+                    tape = parsed;
+                } catch (JsonTape.TooLargeException tooLarge) {
+                    // A huge string or array does not fit in the tape: decode the document up front instead.
+                    rawData = decode(rawJson, projection);
+                }
+            } catch (Exception e) {
+                ConnectLib connectLib = new ConnectLib();
+                connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "parsefromrawjson.error", Map.of("json", rawJson, "exception", String.valueOf(e.getMessage()))));
+            }
         }
+        return new ApiFactory(statusCode, headers, timings(recorder, decodeStart), rawJson, null, tape, rawData);
     }
 
     /**
-     * Method to retrieve the statusCode from response.
+     * Decode a JSON document with Jackson, for the documents too large for a JsonTape.
+     * @param rawJson the document.
+     * @param projection the paths to keep, null to decode the whole document.
+     * @return the unmodifiable data
+     * @throws IOException if the document is not a valid JSON object.
      */
-    protected void setStatusCode(int statusCode) {
-        this.statusCode = statusCode;
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> decode(String rawJson, Projection projection) throws IOException {
+        Map<String, Object> decoded = projection != null
+                ? projection.read(rawJson.getBytes(StandardCharsets.UTF_8), FormatType.JSON)
+                : FormatType.JSON.getMapper().readValue(rawJson, new TypeReference<>() {});
+        if (decoded == null) {
+            throw new IOException("JSON response is not an object");
+        }
+        return (Map<String, Object>) freeze(decoded);
+    }
+
+    /**
+     * Create the response of a body received in a binary format, exposing it through the same accessors as JSON.
+     * @param statusCode the HTTP status code.
+     * @param headers the HTTP headers.
+     * @param recorder the phases of the call, null for a response built outside of a call.
+     * @param rawBody the body.
+     * @param codec the format of the body.
+     * @param projection the paths to keep, null to decode the whole body.
+     * @return the ApiFactory
+     */
+    @SuppressWarnings("unchecked")
+    static ApiFactory ofBytes(int statusCode, Map<String, List<String>> headers, ResponseTimings.Recorder recorder, byte[] rawBody, CodecProvider codec, Projection projection) {
+        long decodeStart = System.nanoTime();
+        Map<String, Object> rawData = null;
+        if (rawBody != null && rawBody.length > 0) {
+            try {
+                Map<String, Object> decoded = projection != null ? projection.read(rawBody, codec) : codec.getMapper().readValue(rawBody, new TypeReference<>() {});
+                rawData = (Map<String, Object>) freeze(decoded);
+            } catch (Exception e) {
+                ConnectLib connectLib = new ConnectLib();
+                connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "parsefrombytes.error", Map.of("format", codec.getMediaType(), "exception", String.valueOf(e.getMessage()))));
+            }
+        }
+        return new ApiFactory(statusCode, headers, timings(recorder, decodeStart), null, rawBody, null, rawData);
+    }
+
+    private static ResponseTimings timings(ResponseTimings.Recorder recorder, long decodeStart) {
+        return recorder == null ? ResponseTimings.NONE : recorder.finish(System.nanoTime() - decodeStart);
+    }
+
+    /**
+     * Makes decoded data unmodifiable, so it can be shared between the threads reading the response.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object freeze(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            ((Map<Object, Object>) map).replaceAll((key, nested) -> freeze(nested));
+            return Collections.unmodifiableMap(map);
+        }
+        if (value instanceof List<?> list) {
+            ((List<Object>) list).replaceAll(ApiFactory::freeze);
+            return Collections.unmodifiableList(list);
+        }
+        return value;
+    }
+
+    /**
+     * Method to retrieve all the headers of the API response.
+     *
+     * @return An unmodifiable, case-insensitive map of the headers and their values.
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Method to retrieve the time taken by the call, from its start to the decoded response.
+     *
+     * @return The duration of the call.
+     */
+    public Duration getDuration() {
+        return timings.getTotal();
+    }
+
+    /**
+     * Method to retrieve where the time of the call was spent: pool acquire, DNS, connect, TLS,
+     * time to first byte, body transfer and decoding.
+     *
+     * @return The timings of the call, all zero for a response built outside of a call.
+     */
+    public ResponseTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Method to retrieve the first value of a header of the API response.
+     *
+     * @param name The name of the header, case-insensitive.
+     * @return The first value of the header, or null if the response does not carry it.
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Method to retrieve the raw JSON of the API response, as received.
+     *
+     * @return The raw JSON string, or null if the response was in a binary format.
+     */
+    public String getRawJson() {
+        return rawJson;
+    }
+
+    /**
+     * Method to retrieve the raw body of an API response received in a binary format, as received.
+     *
+     * @return A copy of the raw body, or null if the response was JSON.
+     */
+    public byte[] getRawBody() {
+        return rawBody == null ? null : rawBody.clone();
     }
 
     /**
      * Method to retrieve the rawData map containing the parsed JSON data.
+     * The map and the maps and lists it holds are unmodifiable, since the response may be shared.
      *
-     * @return The rawData map containing the parsed JSON data.
+     * @return The rawData map containing the parsed JSON data, or null if the response has no data.
      */
+    @SuppressWarnings("unchecked")
     public Map <String, Object> getRawData() {
-        return rawData;
+        Map<String, Object> data = rawData;
+        if (data == null && tape != null) {
+            // Two threads may build the map at once: both build the same data and either one is kept.
+            data = (Map<String, Object>) freeze(tape.materialize(0));
+            rawData = data;
+        }
+        return data;
+    }
+
+    /**
+     * Get the tape of a JSON response, for the readers of this package.
+     * @return the tape, or null for a binary response or if the JSON is invalid.
+     */
+    JsonTape tape() {
+        return tape;
+    }
+
+    /**
+     * Method to check if a response was parsed, without building its data.
+     *
+     * @return true if the response was parsed successfully.
+     */
+    public boolean hasData() {
+        return tape != null || rawData != null;
     }
 
     /**
@@ -80,11 +286,15 @@ public class ApiFactory {
      */
     public <O> Object getData(O type) {
         try {
-            if (rawData == null) {
+            if (!hasData()) {
                 connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "general.mustbe"));
                 return null;
             }
 
+            if (rawData == null) {
+                int index = tape.field(0, type.toString());
+                return index < 0 ? null : tape.materialize(index);
+            }
             return rawData.get(type.toString());
         } catch (Exception e) {
             connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "getdata.error", Map.of("type", type.toString(), "exception", e.getMessage())));
@@ -102,11 +312,15 @@ public class ApiFactory {
      */
     public <O, K> Object getSpecData(O type, K value) {
         try {
-            if (rawData == null) {
+            if (!hasData()) {
                 connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "general.mustbe"));
                 return null;
             }
 
+            if (rawData == null) {
+                int index = tape.field(tape.field(0, type.toString()), value.toString());
+                return index < 0 ? null : tape.materialize(index);
+            }
             Object nested = rawData.get(type.toString());
             if (nested instanceof Map) {
                 Map<?, ?> nestedMap = (Map<?, ?>) nested;
@@ -119,22 +333,198 @@ public class ApiFactory {
     }
 
     /**
-     * Method to retrieve the HTTP status code of the API response.
+     * Method to read a numeric field of the response as a long, without boxing.
+     * A decimal is truncated.
      *
-     * @return The HTTP status code of the API response.
+     * @param type The name of the field.
+     * @return The value of the field, or 0 if the response has no such numeric field.
      */
-    public int getStatusCode() {
+    public <O> long getLong(O type) {
         try {
-            if (rawData == null) {
+            if (tape != null) {
+                int index = tape.field(0, type.toString());
+                return index < 0 ? 0L : tape.longAt(index);
+            }
+            return getData(type) instanceof Number number ? number.longValue() : 0L;
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "getdata.error", Map.of("type", type.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return 0L;
+    }
+
+    /**
+     * Method to read a numeric field of the response as a double, without boxing.
+     *
+     * @param type The name of the field.
+     * @return The value of the field, or 0 if the response has no such numeric field.
+     */
+    public <O> double getDouble(O type) {
+        try {
+            if (tape != null) {
+                int index = tape.field(0, type.toString());
+                return index < 0 ? 0.0 : tape.doubleAt(index);
+            }
+            return getData(type) instanceof Number number ? number.doubleValue() : 0.0;
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "getdata.error", Map.of("type", type.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return 0.0;
+    }
+
+    /**
+     * Method to read a boolean field of the response.
+     *
+     * @param type The name of the field.
+     * @return The value of the field, or false if the response has no such boolean field.
+     */
+    public <O> boolean getBoolean(O type) {
+        try {
+            if (tape != null) {
+                int index = tape.field(0, type.toString());
+                return index >= 0 && tape.booleanAt(index);
+            }
+            return Boolean.TRUE.equals(getData(type));
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "getdata.error", Map.of("type", type.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return false;
+    }
+
+    /**
+     * Method to read a numeric field of the response as an int, without boxing.
+     * A decimal is truncated.
+     *
+     * @param type The name of the field.
+     * @return The value of the field, or 0 if the response has no such numeric field or if it does not fit in an int.
+     */
+    public <O> int getInt(O type) {
+        try {
+            return Math.toIntExact(getLong(type));
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "getdata.error", Map.of("type", type.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return 0;
+    }
+
+    /**
+     * Method to retrieve a value nested anywhere in the response, such as `$.guild.members[3].name`.
+     * The path is compiled on the first call and cached; keep the JsonPath to skip the lookup.
+     *
+     * @param path The path of the value.
+     * @return The value, or null if the response has no such value.
+     */
+    public Object select(String path) {
+        try {
+            return select(JsonPath.compile(path));
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "select.error", Map.of("path", String.valueOf(path), "exception", String.valueOf(e.getMessage()))));
+        }
+        return null;
+    }
+
+    /**
+     * Method to retrieve a value nested anywhere in the response.
+     *
+     * @param path The compiled path of the value.
+     * @return The value, or null if the response has no such value.
+     */
+    public Object select(JsonPath path) {
+        try {
+            if (!hasData()) {
                 connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "general.mustbe"));
-                return -1;
+                return null;
             }
 
-            return statusCode;
+            if (tape != null) {
+                int index = path.locate(tape);
+                return index < 0 ? null : tape.materialize(index);
+            }
+            return path.resolve(rawData);
         } catch (Exception e) {
-            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "getstatus.error", "exception", e.getMessage()));
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "select.error", Map.of("path", path.toString(), "exception", String.valueOf(e.getMessage()))));
         }
-        return -1;
+        return null;
+    }
+
+    /**
+     * Method to read a nested number as an int, without boxing. A decimal is truncated.
+     *
+     * @param path The compiled path of the value.
+     * @return The value, or 0 if the response has no such numeric value or if it does not fit in an int.
+     */
+    public int getInt(JsonPath path) {
+        try {
+            return Math.toIntExact(getLong(path));
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "select.error", Map.of("path", path.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return 0;
+    }
+
+    /**
+     * Method to read a nested number as a long, without boxing. A decimal is truncated.
+     *
+     * @param path The compiled path of the value.
+     * @return The value, or 0 if the response has no such numeric value.
+     */
+    public long getLong(JsonPath path) {
+        try {
+            if (tape != null) {
+                int index = path.locate(tape);
+                return index < 0 ? 0L : tape.longAt(index);
+            }
+            return path.resolve(rawData) instanceof Number number ? number.longValue() : 0L;
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "select.error", Map.of("path", path.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return 0L;
+    }
+
+    /**
+     * Method to read a nested number as a double, without boxing.
+     *
+     * @param path The compiled path of the value.
+     * @return The value, or 0 if the response has no such numeric value.
+     */
+    public double getDouble(JsonPath path) {
+        try {
+            if (tape != null) {
+                int index = path.locate(tape);
+                return index < 0 ? 0.0 : tape.doubleAt(index);
+            }
+            return path.resolve(rawData) instanceof Number number ? number.doubleValue() : 0.0;
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "select.error", Map.of("path", path.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return 0.0;
+    }
+
+    /**
+     * Method to read a nested boolean.
+     *
+     * @param path The compiled path of the value.
+     * @return The value, or false if the response has no such boolean value.
+     */
+    public boolean getBoolean(JsonPath path) {
+        try {
+            if (tape != null) {
+                int index = path.locate(tape);
+                return index >= 0 && tape.booleanAt(index);
+            }
+            return Boolean.TRUE.equals(path.resolve(rawData));
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "select.error", Map.of("path", path.toString(), "exception", String.valueOf(e.getMessage()))));
+        }
+        return false;
+    }
+
+    /**
+     * Method to retrieve the HTTP status code of the API response.
+     *
+     * @return The HTTP status code of the API response.
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 
     /**
@@ -145,11 +535,11 @@ public class ApiFactory {
      */
     public Object display() {
         try {
-            if (rawData == null) {
+            if (!hasData()) {
                 connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "general.mustbe"));
                 return null;
             }
-            return rawData;
+            return getRawData();
         } catch (Exception e) {
             connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "display.error", "exception", e.getMessage()));
         }
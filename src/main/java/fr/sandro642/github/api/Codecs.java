@@ -0,0 +1,161 @@
+package fr.sandro642.github.api;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.FormatType;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.provider.CodecProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codecs chooses the wire format of each call and decodes responses according to their Content-Type.
+ * A route uses the format set for its name, then the one set for its base URL, then JSON.
+ * Requests are encoded in the chosen format and ask for it in their Accept header, with JSON as a fallback,
+ * so a server that does not support the format can still answer in JSON.
+ * It is configured with the `formats` section of infos.yml, formats being json, cbor, smile or msgpack:
+ *
+ * <pre>
+ * formats:
+ *   baseUrls:
+ *     "http://localhost:8080/api": cbor
+ *   routes:
+ *     metrics: msgpack
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class Codecs {
+
+    /**
+     * Singleton instance of Codecs.
+     */
+    private static final Codecs INSTANCE = new Codecs();
+
+    /**
+     * Get the singleton instance of Codecs.
+     * @return the singleton instance
+     */
+    public static Codecs getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Formats chosen by route name and by base URL.
+     */
+    private final Map<String, CodecProvider> routes = new ConcurrentHashMap<>();
+    private final Map<String, CodecProvider> baseUrls = new ConcurrentHashMap<>();
+
+    /**
+     * Formats able to decode a response, by media type.
+     */
+    private final Map<String, CodecProvider> mediaTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private Codecs() {
+        for (FormatType format : FormatType.values()) {
+            register(format);
+        }
+        mediaTypes.put("application/x-msgpack", FormatType.MSGPACK);
+    }
+
+    /**
+     * Load the formats from the `formats` section of infos.yml.
+     * @param yamlFormats the `formats` section, can be null.
+     */
+    public void load(Map<String, Object> yamlFormats) {
+        if (yamlFormats == null) {
+            return;
+        }
+
+        try {
+            if (yamlFormats.get("routes") instanceof Map<?, ?> yamlRoutes) {
+                yamlRoutes.forEach((routeName, format) -> use(routeName.toString(), FormatType.valueOf(format.toString().toUpperCase())));
+            }
+            if (yamlFormats.get("baseUrls") instanceof Map<?, ?> yamlBaseUrls) {
+                yamlBaseUrls.forEach((baseUrl, format) -> useForBaseUrl(baseUrl.toString(), FormatType.valueOf(format.toString().toUpperCase())));
+            }
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "codecs.error", "exception", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Set the format of a route.
+     * @param routeName the name of the route, as in infos.yml.
+     * @param codec the format, or null to fall back to the format of the base URL.
+     * @return Codecs for chaining
+     */
+    public Codecs use(String routeName, CodecProvider codec) {
+        if (codec == null) {
+            routes.remove(routeName);
+        } else {
+            routes.put(routeName, register(codec));
+        }
+        return this;
+    }
+
+    /**
+     * Set the format of every route of a base URL.
+     * @param baseUrl the base URL.
+     * @param codec the format, or null to fall back to JSON.
+     * @return Codecs for chaining
+     */
+    public Codecs useForBaseUrl(String baseUrl, CodecProvider codec) {
+        if (codec == null) {
+            baseUrls.remove(baseUrl);
+        } else {
+            baseUrls.put(baseUrl, register(codec));
+        }
+        return this;
+    }
+
+    /**
+     * Get the format of a call.
+     * @param routeName the name of the route, can be null.
+     * @param baseUrl the base URL, can be null.
+     * @return the format of the route, else of the base URL, else JSON.
+     */
+    public CodecProvider codecOf(String routeName, String baseUrl) {
+        CodecProvider codec = routeName == null ? null : routes.get(routeName);
+        if (codec == null && baseUrl != null) {
+            codec = baseUrls.get(baseUrl);
+        }
+        return codec != null ? codec : FormatType.JSON;
+    }
+
+    /**
+     * Get the format able to decode a response.
+     * @param contentType the Content-Type header of the response, can be null.
+     * @return the format registered for the media type, or JSON if it is unknown.
+     */
+    public CodecProvider codecFor(String contentType) {
+        if (contentType == null) {
+            return FormatType.JSON;
+        }
+        CodecProvider codec = mediaTypes.get(essence(contentType));
+        return codec != null ? codec : FormatType.JSON;
+    }
+
+    private CodecProvider register(CodecProvider codec) {
+        mediaTypes.putIfAbsent(essence(codec.getMediaType()), codec);
+        return codec;
+    }
+
+    /**
+     * Strips the parameters of a media type, e.g. "application/json; charset=utf-8" becomes "application/json".
+     */
+    private static String essence(String mediaType) {
+        int semicolon = mediaType.indexOf(';');
+        return (semicolon < 0 ? mediaType : mediaType.substring(0, semicolon)).trim().toLowerCase();
+    }
+}
@@ -0,0 +1,207 @@
+package fr.sandro642.github.api;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.lang.CategoriesType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression negotiates compressed responses and compresses large request bodies.
+ * Responses are always requested with `Accept-Encoding: gzip, deflate` and are inflated off the event loop.
+ * Request bodies are only compressed with gzip for the routes that opt in, once they reach the route's threshold.
+ * It is configured with the `compression` section of infos.yml, thresholds being in bytes:
+ *
+ * <pre>
+ * compression:
+ *   routes:
+ *     upload: 1024
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class Compression {
+
+    /**
+     * Singleton instance of Compression.
+     */
+    private static final Compression INSTANCE = new Compression();
+
+    /**
+     * Get the singleton instance of Compression.
+     * @return the singleton instance
+     */
+    public static Compression getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Encodings advertised in the Accept-Encoding header of every call.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Threshold in bytes above which the request body of a route is compressed, by route name.
+     */
+    private final Map<String, Integer> thresholds = new ConcurrentHashMap<>();
+
+    /**
+     * Bytes before and after compression of the request bodies, and before and after inflating the responses.
+     */
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder requestWireBytes = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder responseWireBytes = new LongAdder();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private Compression() {}
+
+    /**
+     * Load the thresholds from the `compression` section of infos.yml.
+     * @param yamlCompression the `compression` section, can be null.
+     */
+    @SuppressWarnings("unchecked")
+    public void load(Map<String, Object> yamlCompression) {
+        if (yamlCompression == null || !(yamlCompression.get("routes") instanceof Map<?, ?> routes)) {
+            return;
+        }
+
+        try {
+            ((Map<String, Object>) routes).forEach((routeName, threshold) -> compressAbove(routeName, ((Number) threshold).intValue()));
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "compression.error", "exception", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Compress the request bodies of a route once they reach a size.
+     * @param routeName the name of the route, as in infos.yml.
+     * @param threshold the size in bytes from which bodies are compressed, or a negative value to never compress them.
+     * @return Compression for chaining
+     */
+    public Compression compressAbove(String routeName, int threshold) {
+        if (threshold < 0) {
+            thresholds.remove(routeName);
+        } else {
+            thresholds.put(routeName, threshold);
+        }
+        return this;
+    }
+
+    /**
+     * Get the size from which the request bodies of a route are compressed.
+     * @param routeName the name of the route.
+     * @return the threshold in bytes, or -1 if the route does not compress its bodies.
+     */
+    public int thresholdOf(String routeName) {
+        return routeName == null ? -1 : thresholds.getOrDefault(routeName, -1);
+    }
+
+    /**
+     * Compress a request body with gzip.
+     * @param payload the encoded body.
+     * @return the compressed body.
+     */
+    public byte[] compress(byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, payload.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] compressed = out.toByteArray();
+
+        requests.increment();
+        requestBytes.add(payload.length);
+        requestWireBytes.add(compressed.length);
+        return compressed;
+    }
+
+    /**
+     * Check if a response body must be inflated before it is parsed.
+     * @param contentEncoding the Content-Encoding header of the response, can be null.
+     * @return true for gzip and deflate.
+     */
+    public boolean isSupported(String contentEncoding) {
+        if (contentEncoding == null) return false;
+        String encoding = contentEncoding.trim().toLowerCase();
+        return encoding.equals("gzip") || encoding.equals("x-gzip") || encoding.equals("deflate");
+    }
+
+    /**
+     * Inflate a response body.
+     * Deflate bodies are accepted both with the zlib wrapper required by HTTP and as raw deflate data sent by some servers.
+     * @param body the body as received.
+     * @param contentEncoding the Content-Encoding header of the response.
+     * @return the inflated body.
+     */
+    public byte[] decompress(byte[] body, String contentEncoding) {
+        String encoding = contentEncoding.trim().toLowerCase();
+        byte[] inflated;
+        try {
+            if (!encoding.equals("deflate")) {
+                inflated = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+            } else if (body.length > 1 && (body[0] & 0x0F) == 8 && ((body[0] & 0xFF) << 8 | (body[1] & 0xFF)) % 31 == 0) {
+                inflated = readAll(new InflaterInputStream(new ByteArrayInputStream(body)));
+            } else {
+                inflated = readAll(new InflaterInputStream(new ByteArrayInputStream(body), new Inflater(true)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot inflate a " + encoding + " response", e);
+        }
+
+        responses.increment();
+        responseWireBytes.add(body.length);
+        responseBytes.add(inflated.length);
+        return inflated;
+    }
+
+    /**
+     * Get a snapshot of the compression counters for the dashboard.
+     * @return a map with the bytes and the ratio of the compressed requests and responses.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("thresholds", new LinkedHashMap<>(thresholds));
+        result.put("requests", counters(requests.sum(), requestBytes.sum(), requestWireBytes.sum()));
+        result.put("responses", counters(responses.sum(), responseBytes.sum(), responseWireBytes.sum()));
+        return result;
+    }
+
+    private static Map<String, Object> counters(long count, long bytes, long wireBytes) {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("count", count);
+        counters.put("bytes", bytes);
+        counters.put("wireBytes", wireBytes);
+        counters.put("ratio", wireBytes == 0 ? 0.0 : (double) bytes / wireBytes);
+        return counters;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package fr.sandro642.github.api;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.FormatType;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.provider.AtomicFactory;
+import fr.sandro642.github.provider.FieldPath;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FactoryMapper binds the values of a response into the fields of an object, such as an AtomicFactory subclass.
+ * A class is inspected once, the first time it is bound: each field gets a compiled JsonPath and a setter
+ * MethodHandle adapted to its type, cached with the class. Binding then walks the response directly,
+ * reading numbers and booleans into primitive fields without boxing them, with no reflection per call.
+ *
+ * <p>A field is bound to the value named by its {@link FieldPath} annotation, or to the top-level value of its name.
+ * Static, final and transient fields are left out. Values missing from the response, or null, leave the field as is.
+ * Other types, such as lists or nested objects, are converted with Jackson.</p>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public final class FactoryMapper {
+
+    /**
+     * Mapper of each class, built on its first use.
+     */
+    private static final ClassValue<FactoryMapper> MAPPERS = new ClassValue<>() {
+        @Override
+        protected FactoryMapper computeValue(Class<?> type) {
+            return new FactoryMapper(type);
+        }
+    };
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    private final Class<?> type;
+    private final Binding[] bindings;
+
+    private FactoryMapper(Class<?> type) {
+        this.type = type;
+        List<Binding> found = new ArrayList<>();
+        // The fields of AtomicFactory itself hold the response, they are not bound from it.
+        for (Class<?> declaring = type; declaring != null && declaring != Object.class && declaring != AtomicFactory.class; declaring = declaring.getSuperclass()) {
+            for (Field field : declaring.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                found.add(binding(field));
+            }
+        }
+        this.bindings = found.toArray(new Binding[0]);
+    }
+
+    /**
+     * Get the mapper of a class, inspecting the class on the first call only.
+     * @param type the class to bind.
+     * @return the FactoryMapper
+     * @throws IllegalArgumentException if a field has an invalid path or cannot be accessed.
+     */
+    public static FactoryMapper of(Class<?> type) {
+        return MAPPERS.get(type);
+    }
+
+    /**
+     * Bind the values of a response into the fields of an object.
+     * A field that cannot hold its value is left as is and the error is logged.
+     * @param apiFactory the response.
+     * @param target the object, an instance of the mapper's class.
+     * @return the target, for chaining
+     */
+    public <T> T bind(ApiFactory apiFactory, T target) {
+        if (!type.isInstance(target)) {
+            throw new IllegalArgumentException(target.getClass().getName() + " is not a " + type.getName());
+        }
+
+        JsonTape tape = apiFactory.tape();
+        Map<String, Object> rawData = tape == null ? apiFactory.getRawData() : null;
+        if (tape == null && rawData == null) {
+            return target;
+        }
+
+        for (Binding binding : bindings) {
+            try {
+                if (tape != null) {
+                    binding.fromTape(tape, target);
+                } else {
+                    binding.fromData(rawData, target);
+                }
+            } catch (Throwable e) {
+                connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.APIFACTORY_CLASS, "bind.error", Map.of("field", binding.name, "class", type.getName(), "exception", String.valueOf(e.getMessage()))));
+            }
+        }
+        return target;
+    }
+
+    private static Binding binding(Field field) {
+        FieldPath annotation = field.getAnnotation(FieldPath.class);
+        JsonPath path = JsonPath.compile(annotation != null ? annotation.value() : "$['" + field.getName() + "']");
+
+        MethodHandle setter;
+        try {
+            setter = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup()).unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Field " + field.getName() + " of " + field.getDeclaringClass().getName() + " cannot be accessed", e);
+        }
+
+        Class<?> fieldType = field.getType();
+        Kind kind = fieldType == int.class ? Kind.INT
+                : fieldType == long.class ? Kind.LONG
+                : fieldType == double.class ? Kind.DOUBLE
+                : fieldType == boolean.class ? Kind.BOOLEAN
+                : Kind.OBJECT;
+        Class<?> parameter = kind == Kind.OBJECT ? Object.class : fieldType;
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, parameter));
+
+        JavaType javaType = fieldType == Object.class ? null : mapper().getTypeFactory().constructType(field.getGenericType());
+        return new Binding(field.getName(), path, kind, setter, javaType);
+    }
+
+    private static ObjectMapper mapper() {
+        return FormatType.JSON.getMapper();
+    }
+
+    private enum Kind { INT, LONG, DOUBLE, BOOLEAN, OBJECT }
+
+    /**
+     * A field, the path of its value and the setter adapted to its type.
+     */
+    private static final class Binding {
+
+        private final String name;
+        private final JsonPath path;
+        private final Kind kind;
+        private final MethodHandle setter;
+
+        /**
+         * Type the value is converted to, null for a field of type Object.
+         */
+        private final JavaType javaType;
+
+        private Binding(String name, JsonPath path, Kind kind, MethodHandle setter, JavaType javaType) {
+            this.name = name;
+            this.path = path;
+            this.kind = kind;
+            this.setter = setter;
+            this.javaType = javaType;
+        }
+
+        private void fromTape(JsonTape tape, Object target) throws Throwable {
+            int index = path.locate(tape);
+            if (index < 0 || tape.type(index) == JsonTape.NULL) {
+                return;
+            }
+
+            switch (kind) {
+                case INT -> setter.invokeExact(target, Math.toIntExact(tape.longAt(index)));
+                case LONG -> setter.invokeExact(target, tape.longAt(index));
+                case DOUBLE -> setter.invokeExact(target, tape.doubleAt(index));
+                case BOOLEAN -> setter.invokeExact(target, tape.booleanAt(index));
+                default -> setter.invokeExact(target, convert(tape.type(index) == JsonTape.STRING ? tape.stringAt(index) : tape.materialize(index)));
+            }
+        }
+
+        private void fromData(Map<String, Object> rawData, Object target) throws Throwable {
+            Object value = path.resolve(rawData);
+            if (value == null) {
+                return;
+            }
+
+            switch (kind) {
+                case INT -> setter.invokeExact(target, Math.toIntExact(((Number) value).longValue()));
+                case LONG -> setter.invokeExact(target, ((Number) value).longValue());
+                case DOUBLE -> setter.invokeExact(target, ((Number) value).doubleValue());
+                case BOOLEAN -> setter.invokeExact(target, (boolean) (Boolean) value);
+                default -> setter.invokeExact(target, convert(value));
+            }
+        }
+
+        private Object convert(Object value) {
+            if (javaType == null || javaType.getRawClass().isInstance(value) && !javaType.isContainerType()) {
+                return value;
+            }
+            return mapper().convertValue(value, javaType);
+        }
+    }
+}
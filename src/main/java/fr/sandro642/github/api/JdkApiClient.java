@@ -0,0 +1,250 @@
+package fr.sandro642.github.api;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.FormatType;
+import fr.sandro642.github.enums.MethodType;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.limit.MemoryBudget;
+import fr.sandro642.github.metrics.RouteMetrics;
+import fr.sandro642.github.provider.CodecProvider;
+import fr.sandro642.github.spring.controller.DataController;
+import fr.sandro642.github.spring.dto.Request;
+import org.springframework.http.MediaType;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * JdkApiClient is a blocking alternative to ApiClient built on the JDK HttpClient.
+ * It is meant to be called from virtual threads: the calling thread simply parks while the request is in flight,
+ * so tens of thousands of simple request flows can run without sizing any thread pool.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class JdkApiClient {
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * HttpClient shared by every JdkApiClient so connections are pooled across calls.
+     */
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    /**
+     * Wire format of the request bodies, also asked for in the Accept header of the calls.
+     */
+    private CodecProvider codec = FormatType.JSON;
+
+    /**
+     * Size in bytes from which request bodies are compressed with gzip, or -1 to never compress them.
+     */
+    private int compressAbove = -1;
+
+    /**
+     * Paths kept when parsing the responses, null to parse them whole.
+     */
+    private Projection projection;
+
+    /**
+     * Name of the route in the route table, used to tag the calls on the dashboard and in the metrics.
+     */
+    private String routeName;
+
+    /**
+     * baseUrl is the base URL for the API.
+     */
+    private final String baseUrl;
+
+    /**
+     * Constructor for JdkApiClient.
+     * @param baseUrl the base URL of the API.
+     */
+    public JdkApiClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+
+        if (baseUrl == null) {
+            connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "construct.urlbase"));
+        }
+    }
+
+    /**
+     * Set the wire format of this client: request bodies are encoded with it and responses are asked in it,
+     * with JSON as a fallback. Responses are decoded according to their Content-Type whatever the format asked.
+     * @param codec the format, JSON if null.
+     * @return JdkApiClient for chaining
+     */
+    public JdkApiClient codec(CodecProvider codec) {
+        this.codec = codec != null ? codec : FormatType.JSON;
+        return this;
+    }
+
+    /**
+     * Compress the request bodies of this client with gzip once they reach a size.
+     * The server must accept a gzip Content-Encoding on the routes called.
+     * @param threshold the size in bytes from which bodies are compressed, or a negative value to never compress them.
+     * @return JdkApiClient for chaining
+     */
+    public JdkApiClient compressRequestsAbove(int threshold) {
+        this.compressAbove = threshold < 0 ? -1 : threshold;
+        return this;
+    }
+
+    /**
+     * Parse only part of the responses of this client: values outside the projection are skipped while parsing.
+     * @param projection the paths to keep, null to parse the responses whole.
+     * @return JdkApiClient for chaining
+     */
+    public JdkApiClient project(Projection projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    /**
+     * Tag the calls of this client with the name of their route in the route table rather than with the path called,
+     * whose parameters are substituted, so the dashboard and the metrics group the calls of a route together.
+     * @param routeName the name of the route, null to tag the calls with the path called.
+     * @return JdkApiClient for chaining
+     */
+    public JdkApiClient routeName(String routeName) {
+        this.routeName = routeName;
+        return this;
+    }
+
+    /**
+     * Get the tag of a call: the name of its route if known, the path called otherwise.
+     */
+    private String tagOf(String path) {
+        return routeName != null ? routeName : path;
+    }
+
+    /**
+     * Method to call the API and block until the response is received.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @return the ApiFactory response containing the parsed JSON data.
+     * @throws Exception if the request fails or the calling thread is interrupted.
+     */
+    public ApiFactory callAPI(MethodType methodType, String routeName, Map<String, Object> body) throws Exception {
+        return callAPI(methodType, routeName, body, Map.of());
+    }
+
+    /**
+     * Method to call the API and block until the response is received.
+     * @param methodType HTTP method to use.
+     * @param routeName Name of the route to call.
+     * @param body Body of the request, ignored for GET and DELETE (can be null for a request without body).
+     * @param headers Headers added to the request, e.g. the idempotency key.
+     * @return the ApiFactory response containing the parsed JSON data.
+     * @throws Exception if the request fails or the calling thread is interrupted.
+     */
+    public ApiFactory callAPI(MethodType methodType, String routeName, Map<String, Object> body, Map<String, String> headers) throws Exception {
+        connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call." + methodType.name().toLowerCase(), Map.of("routename", routeName)));
+
+        // As with ApiClient, the body is encoded once an estimate of its size is reserved in the memory budget,
+        // then the lease follows the real size of the body and of the response until the response is parsed.
+        boolean counted = !(body instanceof PreparedBody) && (methodType == MethodType.POST || methodType == MethodType.PUT || methodType == MethodType.PATCH);
+        MemoryBudget.Lease lease = connectLib.MemoryBudget().reserve(counted ? connectLib.MemoryBudget().getDefaultResponseBytes() : 0).block();
+
+        Request r = DataController.getInstance().createRequest(tagOf(routeName), routeName, baseUrl);
+        RouteMetrics.Stats stats = connectLib.RouteMetrics().of(methodType, tagOf(routeName));
+        // The JDK client does not expose its connections: only the headers, the body and the decoding are timed.
+        ResponseTimings.Recorder recorder = new ResponseTimings.Recorder();
+        long sentBytes = 0;
+
+        try {
+            byte[] payload = switch (methodType) {
+                case POST, PUT, PATCH -> body instanceof PreparedBody prepared
+                        ? prepared.bytes(codec, false)
+                        : codec.getMapper().writeValueAsBytes(body != null ? body : Map.of());
+                default -> null;
+            };
+            boolean gzip = payload != null && compressAbove >= 0 && payload.length >= compressAbove;
+            if (gzip) {
+                payload = body instanceof PreparedBody prepared ? prepared.bytes(codec, true) : connectLib.Compression().compress(payload);
+            }
+            sentBytes = payload == null ? 0 : payload.length;
+            long payloadBytes = counted ? sentBytes : 0;
+            lease.adjust(payloadBytes);
+
+            HttpRequest.Builder builder = HttpRequest.newBuilder(resolve(routeName))
+                    .method(methodType.name(), payload == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(payload))
+                    .header("Accept", codec == FormatType.JSON ? "application/json" : codec.getMediaType() + ", application/json;q=0.9")
+                    .header("Accept-Encoding", Compression.ACCEPT_ENCODING);
+            if (payload != null) {
+                builder.header("Content-Type", codec.getMediaType());
+            }
+            if (gzip) {
+                builder.header("Content-Encoding", "gzip");
+            }
+            headers.forEach(builder::header);
+            HttpRequest request = builder.build();
+
+            HttpResponse<byte[]> response = HTTP_CLIENT.send(request, responseInfo -> {
+                recorder.headersReceived();
+                return HttpResponse.BodyHandlers.ofByteArray().apply(responseInfo);
+            });
+
+            connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "call.threadinuse", "thread", Thread.currentThread().toString()));
+
+            String newStatus = (response.statusCode() >= 200 && response.statusCode() < 300) ? "success" : "error";
+            DataController.getInstance().updateRequestStatus(r.getId(), newStatus);
+
+            String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+            byte[] received = response.body().length > 0 && connectLib.Compression().isSupported(encoding) ? connectLib.Compression().decompress(response.body(), encoding) : response.body();
+            recorder.bodyReceived();
+            lease.adjust(payloadBytes + received.length);
+            CodecProvider format = connectLib.Codecs().codecFor(response.headers().firstValue("Content-Type").orElse(null));
+            ApiFactory apiFactory = format == FormatType.JSON
+                    ? ApiFactory.ofJson(response.statusCode(), response.headers().map(), recorder, new String(received, charsetOf(response)), projection)
+                    : ApiFactory.ofBytes(response.statusCode(), response.headers().map(), recorder, received, format, projection);
+            stats.record(response.statusCode(), apiFactory.getDuration().toNanos(), sentBytes, received.length);
+            return apiFactory;
+        } catch (Exception e) {
+            stats.failed(recorder.elapsed(), sentBytes);
+            DataController.getInstance().updateRequestStatus(r.getId(), "error");
+            connectLib.Logger().CRITICAL(connectLib.LangManager().getMessage(CategoriesType.APICLIENT_CLASS, "general.error", Map.of("method", methodType.name(), "exception", String.valueOf(e.getMessage()))));
+            throw e;
+        } finally {
+            lease.release();
+        }
+    }
+
+    /**
+     * Reads the charset of a text response from its Content-Type, UTF-8 by default.
+     * @param response The response.
+     * @return the charset.
+     */
+    private Charset charsetOf(HttpResponse<byte[]> response) {
+        return response.headers().firstValue("Content-Type")
+                .map(contentType -> MediaType.parseMediaType(contentType).getCharset())
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Joins the base URL and the route the same way WebClient does, encoding the characters not allowed in a URI,
+     * such as the spaces of a query value.
+     * @param routeName Name of the route to call.
+     * @return the absolute URI of the route.
+     */
+    private URI resolve(String routeName) {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        String route = routeName.startsWith("/") ? routeName : "/" + routeName;
+        return UriComponentsBuilder.fromUriString(base + route).build().encode().toUri();
+    }
+}
@@ -0,0 +1,196 @@
+package fr.sandro642.github.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JsonPath is a compiled path to a value nested in a response, such as `$.guild.members[3].name`.
+ * A path is parsed once into its steps and can then be evaluated against any number of responses:
+ * on a JSON response it walks the tape directly, without decoding or allocating anything on the way.
+ * Compiled paths are cached by expression, so compiling the same expression again is a lookup.
+ *
+ * <p>Supported syntax: an optional `$` root, `.name` and `['name']` for fields, `[3]` for array elements.</p>
+ *
+ * <pre>
+ * private static final JsonPath FIRST_MEMBER = JsonPath.compile("$.guild.members[0].name");
+ *
+ * String name = (String) apiFactory.select(FIRST_MEMBER);
+ * int online = apiFactory.getInt(JsonPath.compile("$.guild.online"));
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public final class JsonPath {
+
+    /**
+     * Compiled paths, by expression. Past this size, paths are still compiled but no longer cached,
+     * so expressions built on the fly cannot grow the cache without bound.
+     */
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, JsonPath> COMPILED = new ConcurrentHashMap<>();
+
+    private final String expression;
+
+    /**
+     * Field names of the steps, null for an array step.
+     */
+    private final String[] names;
+
+    /**
+     * Positions of the array steps, unused for a field step.
+     */
+    private final int[] positions;
+
+    private JsonPath(String expression, String[] names, int[] positions) {
+        this.expression = expression;
+        this.names = names;
+        this.positions = positions;
+    }
+
+    /**
+     * Compile a path, or get it from the cache if it was already compiled.
+     * @param expression the path, e.g. `$.guild.members[3].name`.
+     * @return the compiled path
+     * @throws IllegalArgumentException if the expression is not a valid path.
+     */
+    public static JsonPath compile(String expression) {
+        JsonPath path = COMPILED.get(expression);
+        if (path != null) {
+            return path;
+        }
+
+        path = parse(expression);
+        if (COMPILED.size() < MAX_CACHED) {
+            COMPILED.putIfAbsent(expression, path);
+        }
+        return path;
+    }
+
+    /**
+     * Get the expression the path was compiled from.
+     * @return the expression
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * Get the number of steps of the path.
+     */
+    int length() {
+        return names.length;
+    }
+
+    /**
+     * Get the field name of a step.
+     * @return the name, or null for an array step.
+     */
+    String name(int step) {
+        return names[step];
+    }
+
+    /**
+     * Get the array position of a step.
+     */
+    int position(int step) {
+        return positions[step];
+    }
+
+    /**
+     * Find the value of the path in a tape.
+     * @param tape the tape of the response.
+     * @return the index of the value, or -1 if the response has no such value.
+     */
+    int locate(JsonTape tape) {
+        int index = 0;
+        for (int i = 0; i < names.length && index >= 0; i++) {
+            index = names[i] != null ? tape.field(index, names[i]) : tape.element(index, positions[i]);
+        }
+        return index;
+    }
+
+    /**
+     * Find the value of the path in decoded data.
+     * @param root the decoded response.
+     * @return the value, or null if the response has no such value.
+     */
+    Object resolve(Object root) {
+        Object current = root;
+        for (int i = 0; i < names.length && current != null; i++) {
+            if (names[i] != null) {
+                current = current instanceof Map<?, ?> map ? map.get(names[i]) : null;
+            } else {
+                current = current instanceof List<?> list && positions[i] < list.size() ? list.get(positions[i]) : null;
+            }
+        }
+        return current;
+    }
+
+    private static JsonPath parse(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("JSON path is null");
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        int length = expression.length();
+        int pos = expression.startsWith("$") ? 1 : 0;
+
+        while (pos < length) {
+            char c = expression.charAt(pos);
+            if (c == '.' || (pos == 0 && c != '[')) {
+                int start = c == '.' ? pos + 1 : pos;
+                int end = start;
+                while (end < length && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == start) throw invalid(expression, start, "expected a field name");
+                names.add(expression.substring(start, end));
+                positions.add(0);
+                pos = end;
+            } else if (c == '[') {
+                int close;
+                char quote = pos + 1 < length ? expression.charAt(pos + 1) : 0;
+                if (quote == '\'' || quote == '"') {
+                    int end = expression.indexOf(quote, pos + 2);
+                    if (end < 0 || end + 1 >= length || expression.charAt(end + 1) != ']') {
+                        throw invalid(expression, pos, "unterminated field name");
+                    }
+                    names.add(expression.substring(pos + 2, end));
+                    positions.add(0);
+                    close = end + 1;
+                } else {
+                    close = expression.indexOf(']', pos);
+                    if (close < 0) throw invalid(expression, pos, "expected ']'");
+                    int position;
+                    try {
+                        position = Integer.parseInt(expression.substring(pos + 1, close));
+                    } catch (NumberFormatException e) {
+                        throw invalid(expression, pos + 1, "expected an array position");
+                    }
+                    if (position < 0) throw invalid(expression, pos + 1, "negative array position");
+                    names.add(null);
+                    positions.add(position);
+                }
+                pos = close + 1;
+            } else {
+                throw invalid(expression, pos, "expected '.' or '['");
+            }
+        }
+
+        return new JsonPath(expression, names.toArray(new String[0]), positions.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static IllegalArgumentException invalid(String expression, int pos, String reason) {
+        return new IllegalArgumentException("Invalid JSON path " + expression + " at position " + pos + ": " + reason);
+    }
+}
@@ -0,0 +1,605 @@
+package fr.sandro642.github.api;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JsonTape is a compact, lazily decoded view of a JSON document.
+ * The document is validated and indexed in a single pass into a tape of longs, one per value or key:
+ * containers know where they end and how many elements they hold, and scalars point into the raw text.
+ * Nothing is decoded until it is read, so reading one field of a large response neither allocates its siblings
+ * nor boxes its numbers, and a cached response costs its text plus 8 bytes per token.
+ *
+ * <p>Each entry holds its type in the high byte. A container stores its element count in bits 32-55 and the index
+ * of the entry following it in bits 0-31; its elements follow it, keys and values alternating in an object.
+ * A string or a number stores its length in bits 32-54, an escape flag in bit 55 and its offset in bits 0-31.</p>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+final class JsonTape {
+
+    static final byte OBJECT = '{';
+    static final byte ARRAY = '[';
+    static final byte STRING = '"';
+    static final byte INTEGER = 'i';
+    static final byte DECIMAL = 'd';
+    static final byte TRUE = 't';
+    static final byte FALSE = 'f';
+    static final byte NULL = 'n';
+
+    private static final long ESCAPED = 1L << 55;
+    private static final int MAX_LENGTH = (1 << 23) - 1;
+    private static final int MAX_COUNT = (1 << 24) - 1;
+    private static final int MAX_DEPTH = 1000;
+
+    private final String json;
+    private long[] tape;
+    private int size;
+
+    private JsonTape(String json) {
+        this.json = json;
+        this.tape = new long[Math.max(16, json.length() / 8)];
+    }
+
+    /**
+     * Validate and index a JSON document.
+     * @param json the document.
+     * @return the tape, whose root entry is at index 0.
+     * @throws IllegalArgumentException if the document is not valid JSON.
+     */
+    static JsonTape parse(String json) {
+        return parse(json, null);
+    }
+
+    /**
+     * Validate and index the projected part of a JSON document.
+     * Fields outside the projection are left out of the tape and array elements outside it are indexed as null;
+     * their content is skipped without being validated.
+     * @param json the document.
+     * @param projection the paths to index, null to index the whole document.
+     * @return the tape, whose root entry is at index 0.
+     * @throws IllegalArgumentException if the document is not valid JSON.
+     */
+    static JsonTape parse(String json, Projection projection) {
+        JsonTape jsonTape = new JsonTape(json);
+        jsonTape.build(projection == null ? Projection.Node.WHOLE : projection.root());
+        jsonTape.tape = Arrays.copyOf(jsonTape.tape, jsonTape.size);
+        return jsonTape;
+    }
+
+    /**
+     * Get the type of an entry.
+     * @param index the index of the entry.
+     * @return one of OBJECT, ARRAY, STRING, INTEGER, DECIMAL, TRUE, FALSE or NULL.
+     */
+    byte type(int index) {
+        return (byte) (tape[index] >>> 56);
+    }
+
+    /**
+     * Get the number of fields of an object or of elements of an array.
+     * @param index the index of the container.
+     * @return the number of elements, 0 for a scalar.
+     */
+    int count(int index) {
+        byte type = type(index);
+        return type == OBJECT || type == ARRAY ? (int) ((tape[index] >>> 32) & MAX_COUNT) : 0;
+    }
+
+    /**
+     * Get the index of the entry following a value and everything it contains.
+     * @param index the index of the value.
+     * @return the index of the next sibling.
+     */
+    int next(int index) {
+        byte type = type(index);
+        return type == OBJECT || type == ARRAY ? (int) tape[index] : index + 1;
+    }
+
+    /**
+     * Find a field of an object. As with a map, the last occurrence of a duplicated name wins.
+     * @param index the index of the object, can be -1.
+     * @param name the name of the field.
+     * @return the index of the value, or -1 if the object has no such field or the entry is not an object.
+     */
+    int field(int index, String name) {
+        if (index < 0 || type(index) != OBJECT) return -1;
+
+        int found = -1;
+        int end = next(index);
+        for (int key = index + 1; key < end; key = next(key + 1)) {
+            if (keyEquals(key, name)) {
+                found = key + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find an element of an array.
+     * @param index the index of the array, can be -1.
+     * @param position the position of the element.
+     * @return the index of the element, or -1 if the array is shorter or the entry is not an array.
+     */
+    int element(int index, int position) {
+        if (index < 0 || type(index) != ARRAY || position < 0 || position >= count(index)) return -1;
+
+        int element = index + 1;
+        for (int i = 0; i < position; i++) {
+            element = next(element);
+        }
+        return element;
+    }
+
+    /**
+     * Read a number as a long, without boxing. A decimal is truncated.
+     * @param index the index of the number.
+     * @return the value
+     * @throws IllegalArgumentException if the entry is not a number.
+     * @throws ArithmeticException if the integer does not fit in a long.
+     */
+    long longAt(int index) {
+        byte type = type(index);
+        if (type == DECIMAL) {
+            return (long) doubleAt(index);
+        }
+        if (type != INTEGER) {
+            throw new IllegalArgumentException("JSON value is not a number but " + describe(type));
+        }
+
+        int offset = offset(index);
+        int end = offset + length(index);
+        boolean negative = json.charAt(offset) == '-';
+        int i = negative ? offset + 1 : offset;
+        if (end - i > 18) {
+            return new BigInteger(json.substring(offset, end)).longValueExact();
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            value = value * 10 + (json.charAt(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read a number as a double, without boxing.
+     * @param index the index of the number.
+     * @return the value
+     * @throws IllegalArgumentException if the entry is not a number.
+     */
+    double doubleAt(int index) {
+        byte type = type(index);
+        if (type == INTEGER && length(index) <= 15) {
+            return longAt(index);
+        }
+        if (type != INTEGER && type != DECIMAL) {
+            throw new IllegalArgumentException("JSON value is not a number but " + describe(type));
+        }
+        int offset = offset(index);
+        return Double.parseDouble(json.substring(offset, offset + length(index)));
+    }
+
+    /**
+     * Read a boolean.
+     * @param index the index of the boolean.
+     * @return the value
+     * @throws IllegalArgumentException if the entry is not a boolean.
+     */
+    boolean booleanAt(int index) {
+        byte type = type(index);
+        if (type != TRUE && type != FALSE) {
+            throw new IllegalArgumentException("JSON value is not a boolean but " + describe(type));
+        }
+        return type == TRUE;
+    }
+
+    /**
+     * Read a string, decoding its escapes if it has any.
+     * @param index the index of the string.
+     * @return the value
+     * @throws IllegalArgumentException if the entry is not a string.
+     */
+    String stringAt(int index) {
+        if (type(index) != STRING) {
+            throw new IllegalArgumentException("JSON value is not a string but " + describe(type(index)));
+        }
+        int offset = offset(index);
+        int end = offset + length(index);
+        return (tape[index] & ESCAPED) == 0 ? json.substring(offset, end) : unescape(offset, end);
+    }
+
+    /**
+     * Build the Java value of an entry, with the same types as Jackson:
+     * LinkedHashMap, ArrayList, String, Integer, Long, BigInteger, Double, Boolean or null.
+     * @param index the index of the value.
+     * @return the value
+     */
+    Object materialize(int index) {
+        switch (type(index)) {
+            case OBJECT: {
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, count(index) * 4 / 3 + 1));
+                int end = next(index);
+                for (int key = index + 1; key < end; key = next(key + 1)) {
+                    map.put(stringAt(key), materialize(key + 1));
+                }
+                return map;
+            }
+            case ARRAY: {
+                List<Object> list = new ArrayList<>(count(index));
+                int end = next(index);
+                for (int element = index + 1; element < end; element = next(element)) {
+                    list.add(materialize(element));
+                }
+                return list;
+            }
+            case STRING:
+                return stringAt(index);
+            case INTEGER: {
+                int digits = length(index) - (json.charAt(offset(index)) == '-' ? 1 : 0);
+                if (digits <= 18) {
+                    long value = longAt(index);
+                    if (value == (int) value) {
+                        return (int) value;
+                    }
+                    return value;
+                }
+                BigInteger value = new BigInteger(json.substring(offset(index), offset(index) + length(index)));
+                if (value.bitLength() < 64) {
+                    return value.longValue();
+                }
+                return value;
+            }
+            case DECIMAL:
+                return doubleAt(index);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    private boolean keyEquals(int index, String name) {
+        if ((tape[index] & ESCAPED) != 0) {
+            return stringAt(index).equals(name);
+        }
+        int length = length(index);
+        return length == name.length() && json.regionMatches(offset(index), name, 0, length);
+    }
+
+    private int offset(int index) {
+        return (int) tape[index];
+    }
+
+    private int length(int index) {
+        return (int) ((tape[index] >>> 32) & MAX_LENGTH);
+    }
+
+    private static String describe(byte type) {
+        return switch (type) {
+            case OBJECT -> "an object";
+            case ARRAY -> "an array";
+            case STRING -> "a string";
+            case TRUE, FALSE -> "a boolean";
+            case NULL -> "null";
+            default -> "a number";
+        };
+    }
+
+    // ------------------------------------------------------------------ parsing
+
+    private void build(Projection.Node root) {
+        int[] stack = new int[16];
+        int[] counts = new int[16];
+        Projection.Node[] nodes = new Projection.Node[16];
+        Projection.Node node = root;
+        boolean dropped = false;
+        int depth = 0;
+        int pos = 0;
+
+        values:
+        while (true) {
+            pos = skipWhitespace(pos);
+            char c = charAt(pos);
+
+            if (node == null) {
+                // Outside the projection: drop the field along with its key, or keep the element's position with a null.
+                pos = skip(pos);
+                if (type(stack[depth - 1]) == OBJECT) {
+                    size--;
+                    dropped = true;
+                } else {
+                    append(entry(NULL, 0, 0));
+                }
+            } else if (c == '{' || c == '[') {
+                int container = append(0);
+                pos = skipWhitespace(pos + 1);
+                byte type = c == '{' ? OBJECT : ARRAY;
+
+                if (charAt(pos) == (c == '{' ? '}' : ']')) {
+                    tape[container] = entry(type, 0, size);
+                    pos++;
+                } else {
+                    if (depth == MAX_DEPTH) throw error("nesting deeper than " + MAX_DEPTH, pos);
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        counts = Arrays.copyOf(counts, depth * 2);
+                        nodes = Arrays.copyOf(nodes, depth * 2);
+                    }
+                    tape[container] = entry(type, 0, 0);
+                    stack[depth] = container;
+                    counts[depth] = 0;
+                    nodes[depth] = node;
+                    depth++;
+                    if (type == OBJECT) {
+                        pos = key(pos);
+                        node = child(nodes[depth - 1], size - 1);
+                    } else {
+                        node = nodes[depth - 1].element(0);
+                    }
+                    continue;
+                }
+            } else if (c == '"') {
+                pos = string(pos);
+            } else if (c == 't') {
+                pos = literal(pos, "true", TRUE);
+            } else if (c == 'f') {
+                pos = literal(pos, "false", FALSE);
+            } else if (c == 'n') {
+                pos = literal(pos, "null", NULL);
+            } else {
+                pos = number(pos);
+            }
+
+            // A value is complete: move on to the next element, or close the containers it completes.
+            while (true) {
+                if (depth == 0) {
+                    pos = skipWhitespace(pos);
+                    if (pos != json.length()) throw error("unexpected content after the document", pos);
+                    return;
+                }
+
+                int container = stack[depth - 1];
+                boolean object = type(container) == OBJECT;
+                if (!dropped) {
+                    counts[depth - 1]++;
+                }
+                dropped = false;
+                pos = skipWhitespace(pos);
+                c = charAt(pos);
+
+                if (c == ',') {
+                    pos++;
+                    if (object) {
+                        pos = key(skipWhitespace(pos));
+                        node = child(nodes[depth - 1], size - 1);
+                    } else {
+                        node = nodes[depth - 1].element(counts[depth - 1]);
+                    }
+                    continue values;
+                }
+                if (c != (object ? '}' : ']')) {
+                    throw error("expected ',' or '" + (object ? '}' : ']') + "'", pos);
+                }
+                if (counts[depth - 1] > MAX_COUNT) throw new TooLargeException("container too large to index", pos);
+                tape[container] = entry(object ? OBJECT : ARRAY, counts[depth - 1], size);
+                depth--;
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Finds the node of a field from its key, without decoding the key unless it is escaped.
+     */
+    private Projection.Node child(Projection.Node node, int key) {
+        if (node.whole) return node;
+        for (int i = 0; i < node.fieldCount(); i++) {
+            if (keyEquals(key, node.fieldName(i))) return node.fieldNode(i);
+        }
+        return null;
+    }
+
+    /**
+     * Skips a value outside the projection, only matching its brackets and strings,
+     * leaving the position on the ',' or the closing bracket that follows it.
+     */
+    private int skip(int pos) {
+        int nesting = 0;
+        while (true) {
+            char c = charAt(pos);
+            if (c == '"') {
+                pos = skipString(pos + 1);
+                if (nesting == 0) return pos;
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                nesting++;
+            } else if (c == '}' || c == ']') {
+                if (nesting == 0) return pos;
+                if (--nesting == 0) return pos + 1;
+            } else if (c == ',' && nesting == 0) {
+                return pos;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Finds the end of a string, returning the position after its closing quote.
+     */
+    private int skipString(int pos) {
+        while (true) {
+            int quote = json.indexOf('"', pos);
+            if (quote < 0) throw error("unterminated string", pos);
+            int backslashes = 0;
+            while (json.charAt(quote - 1 - backslashes) == '\\') backslashes++;
+            if ((backslashes & 1) == 0) return quote + 1;
+            pos = quote + 1;
+        }
+    }
+
+    /**
+     * Reads a key and its colon, leaving the position on the value.
+     */
+    private int key(int pos) {
+        if (charAt(pos) != '"') throw error("expected a field name", pos);
+        pos = skipWhitespace(string(pos));
+        if (charAt(pos) != ':') throw error("expected ':'", pos);
+        return pos + 1;
+    }
+
+    private int string(int pos) {
+        int start = pos + 1;
+        boolean escaped = false;
+        int i = start;
+        while (true) {
+            char c = charAt(i);
+            if (c == '"') break;
+            if (c == '\\') {
+                escaped = true;
+                char e = charAt(i + 1);
+                if (e == 'u') {
+                    for (int h = i + 2; h < i + 6; h++) {
+                        if (Character.digit(charAt(h), 16) < 0) throw error("invalid unicode escape", h);
+                    }
+                    i += 6;
+                } else if ("\"\\/bfnrt".indexOf(e) >= 0) {
+                    i += 2;
+                } else {
+                    throw error("invalid escape", i);
+                }
+            } else if (c < 0x20) {
+                throw error("control character in string", i);
+            } else {
+                i++;
+            }
+        }
+        int length = i - start;
+        if (length > MAX_LENGTH) throw new TooLargeException("string too long to index", start);
+        append(entry(STRING, length, start) | (escaped ? ESCAPED : 0));
+        return i + 1;
+    }
+
+    private int number(int pos) {
+        int start = pos;
+        boolean integral = true;
+        if (pos < json.length() && json.charAt(pos) == '-') pos++;
+
+        char c = charAt(pos);
+        if (c == '0') {
+            pos++;
+        } else if (c >= '1' && c <= '9') {
+            pos = digits(pos);
+        } else {
+            throw error("unexpected character '" + c + "'", pos);
+        }
+        if (pos < json.length() && json.charAt(pos) == '.') {
+            integral = false;
+            pos = requireDigits(pos + 1);
+        }
+        if (pos < json.length() && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E')) {
+            integral = false;
+            pos++;
+            if (pos < json.length() && (json.charAt(pos) == '+' || json.charAt(pos) == '-')) pos++;
+            pos = requireDigits(pos);
+        }
+
+        if (pos - start > MAX_LENGTH) throw new TooLargeException("number too long to index", start);
+        append(entry(integral ? INTEGER : DECIMAL, pos - start, start));
+        return pos;
+    }
+
+    private int requireDigits(int pos) {
+        char c = charAt(pos);
+        if (c < '0' || c > '9') throw error("expected a digit", pos);
+        return digits(pos);
+    }
+
+    private int digits(int pos) {
+        while (pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9') pos++;
+        return pos;
+    }
+
+    private int literal(int pos, String literal, byte type) {
+        if (!json.startsWith(literal, pos)) throw error("invalid literal", pos);
+        append(entry(type, 0, 0));
+        return pos + literal.length();
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') break;
+            pos++;
+        }
+        return pos;
+    }
+
+    private char charAt(int pos) {
+        if (pos >= json.length()) throw error("unexpected end of document", pos);
+        return json.charAt(pos);
+    }
+
+    private int append(long entry) {
+        if (size == tape.length) {
+            tape = Arrays.copyOf(tape, size * 2);
+        }
+        tape[size] = entry;
+        return size++;
+    }
+
+    private static long entry(byte type, int high, int low) {
+        return ((long) type << 56) | ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private String unescape(int offset, int end) {
+        StringBuilder builder = new StringBuilder(end - offset);
+        for (int i = offset; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    builder.append((char) Integer.parseInt(json, i + 1, i + 5, 16));
+                    i += 4;
+                }
+                default -> builder.append(e);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static IllegalArgumentException error(String message, int pos) {
+        return new IllegalArgumentException("Invalid JSON at position " + pos + ": " + message);
+    }
+
+    /**
+     * Thrown when a valid document exceeds the limits of the tape: a string or a number longer than 8M chars,
+     * or a container with more than 16M elements. Such a document must be decoded another way.
+     */
+    static final class TooLargeException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private TooLargeException(String message, int pos) {
+            super("JSON at position " + pos + " cannot be indexed: " + message);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package fr.sandro642.github.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import fr.sandro642.github.provider.CodecProvider;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PreparedBody is a request body meant to be sent many times, such as a heartbeat or a configuration push.
+ * It is an immutable copy of the given map that serializes itself once per wire format and keeps the bytes,
+ * so repeated sends skip serialization and compression entirely.
+ * On Reactor Netty the bytes are also kept in a single direct buffer: each send writes a retained duplicate of it,
+ * which is released once written, so no copy is made per request. Close the body to free that buffer.
+ * The values of the map must not be modified once the body is prepared.
+ *
+ * <pre>
+ * PreparedBody heartbeat = PreparedBody.of(Map.of("server", "lobby-1"));
+ * connectLib.JobGetInfos().getRoutes(MethodType.POST, Routes.HEARTBEAT).body(heartbeat).execute();
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public final class PreparedBody extends AbstractMap<String, Object> implements AutoCloseable {
+
+    /**
+     * Immutable copy of the body.
+     */
+    private final Map<String, Object> body;
+
+    /**
+     * Hash of the body, computed once since the body cannot change.
+     */
+    private final int hash;
+
+    /**
+     * Encoded bytes, by wire format and compression.
+     */
+    private final Map<Variant, Encoded> encodings = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private PreparedBody(Map<?, ?> body) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        body.forEach((key, value) -> copy.put(String.valueOf(key), value));
+        this.body = Collections.unmodifiableMap(copy);
+        this.hash = copy.hashCode();
+    }
+
+    /**
+     * Prepare a body to be sent many times.
+     * @param body the body, copied.
+     * @return the PreparedBody
+     */
+    public static PreparedBody of(Map<?, ?> body) {
+        return new PreparedBody(body == null ? Map.of() : body);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return body.entrySet();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return body.get(key);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Free the direct buffers of the body. It can still be sent afterwards, from its cached bytes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        encodings.values().forEach(Encoded::release);
+    }
+
+    /**
+     * Get the encoded bytes of the body, serializing it on the first call only.
+     * @param codec the wire format.
+     * @param gzip true for the gzip-compressed bytes.
+     * @return the bytes, shared: they must not be modified.
+     */
+    byte[] bytes(CodecProvider codec, boolean gzip) {
+        return encoded(codec, gzip).bytes;
+    }
+
+    /**
+     * Get a buffer holding the encoded body, to be written once and released by the writer.
+     * @param factory the buffer factory of the request.
+     * @param codec the wire format.
+     * @param gzip true for the gzip-compressed body.
+     * @return the buffer
+     */
+    DataBuffer buffer(DataBufferFactory factory, CodecProvider codec, boolean gzip) {
+        Encoded encoded = encoded(codec, gzip);
+        if (factory instanceof NettyDataBufferFactory netty) {
+            ByteBuf duplicate = encoded.retainedDuplicate(closed);
+            if (duplicate != null) {
+                return netty.wrap(duplicate);
+            }
+        }
+        return factory.wrap(encoded.bytes);
+    }
+
+    private Encoded encoded(CodecProvider codec, boolean gzip) {
+        byte[] plain = gzip ? bytes(codec, false) : null;
+        return encodings.computeIfAbsent(new Variant(codec, gzip), variant -> {
+            if (gzip) {
+                return new Encoded(Compression.getInstance().compress(plain));
+            }
+            try {
+                return new Encoded(codec.getMapper().writeValueAsBytes(body));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Body of the request cannot be serialized to " + codec.getMediaType(), e);
+            }
+        });
+    }
+
+    private record Variant(CodecProvider codec, boolean gzip) {}
+
+    /**
+     * Encoded bytes of the body, and the direct buffer holding them once the body was sent through Reactor Netty.
+     */
+    private static final class Encoded {
+
+        private final byte[] bytes;
+        private ByteBuf direct;
+        private boolean released;
+
+        private Encoded(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Get a duplicate of the direct buffer sharing its memory, retained for the writer.
+         * @return the duplicate, or null once the buffer is released.
+         */
+        private synchronized ByteBuf retainedDuplicate(boolean closed) {
+            if (released || closed) {
+                return null;
+            }
+            if (direct == null) {
+                direct = Unpooled.directBuffer(bytes.length, bytes.length).writeBytes(bytes);
+            }
+            return direct.retainedDuplicate();
+        }
+
+        private synchronized void release() {
+            if (!released && direct != null) {
+                direct.release();
+            }
+            released = true;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package fr.sandro642.github.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.sandro642.github.provider.CodecProvider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projection is the set of paths a caller reads from a response, so that everything else can be skipped while parsing.
+ * A projected JSON response only indexes the values on the way to the paths: other fields are dropped and
+ * other array elements are replaced by null, so positions are kept, and their content is skipped without being indexed.
+ * Binary formats are read with Jackson's streaming parser, skipping the other subtrees the same way.
+ * A path ending on an object or an array keeps all of its content.
+ *
+ * <pre>
+ * connectLib.JobGetInfos().getRoutes(MethodType.GET, Routes.GUILD)
+ *         .project("$.guild.name", "$.guild.online", "$.guild.members[0].name")
+ *         .execute();
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public final class Projection {
+
+    private final List<JsonPath> paths;
+
+    /**
+     * Tree of the paths, one node per step.
+     */
+    private final Node root = new Node();
+
+    private Projection(List<JsonPath> paths) {
+        this.paths = Collections.unmodifiableList(paths);
+        for (JsonPath path : paths) {
+            Node node = root;
+            for (int step = 0; step < path.length(); step++) {
+                node = path.name(step) != null ? node.addField(path.name(step)) : node.addElement(path.position(step));
+            }
+            node.whole = true;
+        }
+    }
+
+    /**
+     * Create a projection from path expressions, such as `$.guild.members[3].name`.
+     * @param paths the paths to keep.
+     * @return the Projection
+     * @throws IllegalArgumentException if an expression is not a valid path.
+     */
+    public static Projection of(String... paths) {
+        List<JsonPath> compiled = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            compiled.add(JsonPath.compile(path));
+        }
+        return new Projection(compiled);
+    }
+
+    /**
+     * Create a projection from compiled paths.
+     * @param paths the paths to keep.
+     * @return the Projection
+     */
+    public static Projection of(JsonPath... paths) {
+        return new Projection(Arrays.asList(paths.clone()));
+    }
+
+    /**
+     * Get the paths kept by the projection.
+     * @return the paths
+     */
+    public List<JsonPath> getPaths() {
+        return paths;
+    }
+
+    @Override
+    public String toString() {
+        return paths.toString();
+    }
+
+    /**
+     * Get the root of the tree of the paths.
+     */
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Decode the projected part of a binary response.
+     * @param bytes the response.
+     * @param codec the format of the response.
+     * @return the decoded response, holding only the projected values.
+     * @throws IOException if the response cannot be decoded.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> read(byte[] bytes, CodecProvider codec) throws IOException {
+        ObjectMapper mapper = codec.getMapper();
+        try (JsonParser parser = mapper.getFactory().createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Response is not an object");
+            }
+            return (Map<String, Object>) read(parser, mapper, root);
+        }
+    }
+
+    private static Object read(JsonParser parser, ObjectMapper mapper, Node node) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (node.whole || (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY)) {
+            return mapper.readValue(parser, Object.class);
+        }
+
+        if (token == JsonToken.START_OBJECT) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                Node child = node.field(name);
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                } else {
+                    map.put(name, read(parser, mapper, child));
+                }
+            }
+            return map;
+        }
+
+        List<Object> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            Node child = node.element(list.size());
+            if (child == null) {
+                parser.skipChildren();
+                list.add(null);
+            } else {
+                list.add(read(parser, mapper, child));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Step of the projection: the fields and elements to keep below a value, or all of its content.
+     */
+    static final class Node {
+
+        /**
+         * Node keeping the whole value, used when there is no projection.
+         */
+        static final Node WHOLE = new Node();
+
+        static {
+            WHOLE.whole = true;
+        }
+
+        boolean whole;
+        private String[] names = new String[0];
+        private Node[] fields = new Node[0];
+        private int[] positions = new int[0];
+        private Node[] elements = new Node[0];
+
+        /**
+         * Get the node of a field.
+         * @return the node, or null if the field is not kept.
+         */
+        Node field(String name) {
+            if (whole) return this;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) return fields[i];
+            }
+            return null;
+        }
+
+        /**
+         * Get the number of fields kept below the node, to match them against raw keys without decoding them.
+         */
+        int fieldCount() {
+            return whole ? 0 : names.length;
+        }
+
+        String fieldName(int i) {
+            return names[i];
+        }
+
+        Node fieldNode(int i) {
+            return fields[i];
+        }
+
+        /**
+         * Get the node of an array element.
+         * @return the node, or null if the element is not kept.
+         */
+        Node element(int position) {
+            if (whole) return this;
+            for (int i = 0; i < positions.length; i++) {
+                if (positions[i] == position) return elements[i];
+            }
+            return null;
+        }
+
+        private Node addField(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) return fields[i];
+            }
+            names = Arrays.copyOf(names, names.length + 1);
+            fields = Arrays.copyOf(fields, fields.length + 1);
+            names[names.length - 1] = name;
+            return fields[fields.length - 1] = new Node();
+        }
+
+        private Node addElement(int position) {
+            for (int i = 0; i < positions.length; i++) {
+                if (positions[i] == position) return elements[i];
+            }
+            positions = Arrays.copyOf(positions, positions.length + 1);
+            elements = Arrays.copyOf(elements, elements.length + 1);
+            positions[positions.length - 1] = position;
+            return elements[elements.length - 1] = new Node();
+        }
+    }
+}
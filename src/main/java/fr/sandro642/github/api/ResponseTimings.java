@@ -0,0 +1,342 @@
+package fr.sandro642.github.api;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.http.client.HttpClientResponse;
+import reactor.util.context.ContextView;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * ResponseTimings is the breakdown of where the time of a call was spent:
+ * waiting for a pooled connection, resolving the host, connecting, the TLS handshake, waiting for the first byte
+ * of the response, transferring the body and decoding it.
+ * With the Reactor client the phases come from Reactor Netty's connection and request callbacks; DNS, connect and TLS
+ * are only spent by the call that opened its connection and are zero when a pooled connection was reused.
+ * The JDK client does not expose its connection, so its calls only split the time to the first byte, the body and the decoding.
+ *
+ * <pre>
+ * ResponseTimings timings = apiFactory.getTimings();
+ * if (timings.getTotal().toMillis() > 500) connectLib.Logger().WARN(timings.toString());
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public final class ResponseTimings {
+
+    /**
+     * Timings of a response built outside of a call, with every phase at zero.
+     */
+    static final ResponseTimings NONE = new ResponseTimings(0, 0, 0, 0, 0, 0, 0, 0, true);
+
+    private final long poolAcquire;
+    private final long dns;
+    private final long connect;
+    private final long tls;
+    private final long timeToFirstByte;
+    private final long bodyTransfer;
+    private final long decode;
+    private final long total;
+    private final boolean connectionReused;
+
+    private ResponseTimings(long poolAcquire, long dns, long connect, long tls, long timeToFirstByte, long bodyTransfer, long decode, long total, boolean connectionReused) {
+        this.poolAcquire = poolAcquire;
+        this.dns = dns;
+        this.connect = connect;
+        this.tls = tls;
+        this.timeToFirstByte = timeToFirstByte;
+        this.bodyTransfer = bodyTransfer;
+        this.decode = decode;
+        this.total = total;
+        this.connectionReused = connectionReused;
+    }
+
+    /**
+     * Get the time spent waiting for a connection of the pool, not counting the opening of a new one.
+     * @return the duration
+     */
+    public Duration getPoolAcquire() {
+        return Duration.ofNanos(poolAcquire);
+    }
+
+    /**
+     * Get the time spent resolving the host of a new connection.
+     * @return the duration, zero if a pooled connection was reused.
+     */
+    public Duration getDns() {
+        return Duration.ofNanos(dns);
+    }
+
+    /**
+     * Get the time spent opening the TCP connection of a new connection.
+     * @return the duration, zero if a pooled connection was reused.
+     */
+    public Duration getConnect() {
+        return Duration.ofNanos(connect);
+    }
+
+    /**
+     * Get the time spent on the TLS handshake of a new connection.
+     * @return the duration, zero for plain HTTP or if a pooled connection was reused.
+     */
+    public Duration getTls() {
+        return Duration.ofNanos(tls);
+    }
+
+    /**
+     * Get the time between the request being sent and the headers of the response being received,
+     * i.e. the time spent by the server and the network.
+     * @return the duration
+     */
+    public Duration getTimeToFirstByte() {
+        return Duration.ofNanos(timeToFirstByte);
+    }
+
+    /**
+     * Get the time spent receiving the body of the response, including inflating it.
+     * @return the duration
+     */
+    public Duration getBodyTransfer() {
+        return Duration.ofNanos(bodyTransfer);
+    }
+
+    /**
+     * Get the time spent decoding the body.
+     * @return the duration
+     */
+    public Duration getDecode() {
+        return Duration.ofNanos(decode);
+    }
+
+    /**
+     * Get the time of the whole call, from its start to the decoded response.
+     * @return the duration
+     */
+    public Duration getTotal() {
+        return Duration.ofNanos(total);
+    }
+
+    /**
+     * Check if the call reused a pooled connection instead of opening a new one.
+     * @return true if the connection was reused, or if the client does not tell.
+     */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    /**
+     * Get the phases in milliseconds, for the dashboard and the logs.
+     * @return a map of the phases
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> phases = new LinkedHashMap<>();
+        phases.put("poolAcquire", millis(poolAcquire));
+        phases.put("dns", millis(dns));
+        phases.put("connect", millis(connect));
+        phases.put("tls", millis(tls));
+        phases.put("timeToFirstByte", millis(timeToFirstByte));
+        phases.put("bodyTransfer", millis(bodyTransfer));
+        phases.put("decode", millis(decode));
+        phases.put("total", millis(total));
+        phases.put("connectionReused", connectionReused);
+        return phases;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseTimings" + toMap();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // ------------------------------------------------------------------ recording
+
+    /**
+     * Key of the Recorder of a call in the Reactor context of its exchange.
+     */
+    static final Class<Recorder> CONTEXT_KEY = Recorder.class;
+
+    private static final AttributeKey<ConnectionTimes> CONNECTION_TIMES = AttributeKey.valueOf("connectlib.timings");
+
+    /**
+     * Callbacks shared by every instrumented client, so clients built on the same pool keep sharing its connections.
+     */
+    private static final Consumer<Connection> ON_RESOLVE = connection -> times(connection.channel()).resolveStart = System.nanoTime();
+    private static final BiConsumer<Connection, SocketAddress> AFTER_RESOLVE = (connection, address) -> times(connection.channel()).resolveEnd = System.nanoTime();
+    private static final BiConsumer<HttpClientRequest, Connection> ON_REQUEST = (request, connection) -> {
+        Recorder recorder = recorder(request.currentContextView());
+        if (recorder != null) recorder.onRequest(connection.channel());
+    };
+    private static final BiConsumer<HttpClientRequest, Connection> AFTER_REQUEST = (request, connection) -> {
+        Recorder recorder = recorder(request.currentContextView());
+        if (recorder != null) recorder.sent = System.nanoTime();
+    };
+    private static final BiConsumer<HttpClientResponse, Connection> ON_RESPONSE = (response, connection) -> {
+        Recorder recorder = recorder(response.currentContextView());
+        if (recorder != null) recorder.headers = System.nanoTime();
+    };
+
+    /**
+     * Add the timing callbacks to a client.
+     * @param httpClient the client.
+     * @return the instrumented client
+     */
+    static HttpClient instrument(HttpClient httpClient) {
+        return httpClient
+                .doOnChannelInit(ResponseTimings::onChannelInit)
+                .doOnResolve(ON_RESOLVE)
+                .doAfterResolve(AFTER_RESOLVE)
+                .doOnRequest(ON_REQUEST)
+                .doAfterRequest(AFTER_REQUEST)
+                .doOnResponse(ON_RESPONSE);
+    }
+
+    private static void onChannelInit(ConnectionObserver observer, Channel channel, SocketAddress remoteAddress) {
+        channel.pipeline().addFirst("connectlib.timings", new ConnectTimer(times(channel)));
+    }
+
+    private static ConnectionTimes times(Channel channel) {
+        ConnectionTimes times = channel.attr(CONNECTION_TIMES).get();
+        if (times == null) {
+            times = new ConnectionTimes();
+            ConnectionTimes existing = channel.attr(CONNECTION_TIMES).setIfAbsent(times);
+            if (existing != null) times = existing;
+        }
+        return times;
+    }
+
+    private static Recorder recorder(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    /**
+     * Times of the opening of a connection, kept on its channel until the first call sent on it claims them.
+     */
+    private static final class ConnectionTimes {
+        private volatile long resolveStart;
+        private volatile long resolveEnd;
+        private volatile long connectStart;
+        private volatile long connectEnd;
+        private volatile long tlsEnd;
+        private boolean claimed;
+
+        private synchronized boolean claim() {
+            if (claimed) return false;
+            claimed = true;
+            return true;
+        }
+    }
+
+    /**
+     * Records when the TCP connection is opened and when the TLS handshake that follows completes.
+     */
+    private static final class ConnectTimer extends ChannelOutboundHandlerAdapter {
+
+        private final ConnectionTimes times;
+
+        private ConnectTimer(ConnectionTimes times) {
+            this.times = times;
+        }
+
+        @Override
+        public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception {
+            times.connectStart = System.nanoTime();
+            promise.addListener(connected -> {
+                times.connectEnd = System.nanoTime();
+                SslHandler ssl = ctx.pipeline().get(SslHandler.class);
+                if (ssl != null) {
+                    ssl.handshakeFuture().addListener(handshake -> times.tlsEnd = System.nanoTime());
+                }
+            });
+            super.connect(ctx, remoteAddress, localAddress, promise);
+        }
+    }
+
+    /**
+     * Collects the phases of one call as its exchange goes through them.
+     */
+    static final class Recorder {
+
+        private final long start = System.nanoTime();
+        private volatile long request;
+        private volatile long sent;
+        private volatile long headers;
+        private volatile long body;
+        private volatile long dns;
+        private volatile long connect;
+        private volatile long tls;
+        private volatile boolean reused = true;
+
+        /**
+         * Called once a connection is acquired, takes the opening times of the connection if this call opened it.
+         */
+        private void onRequest(Channel channel) {
+            request = System.nanoTime();
+            ConnectionTimes times = channel.attr(CONNECTION_TIMES).get();
+            if (times == null || !times.claim()) {
+                return;
+            }
+            reused = false;
+            dns = span(times.resolveStart, times.resolveEnd);
+            connect = span(times.connectStart, times.connectEnd);
+            tls = span(times.connectEnd, times.tlsEnd);
+        }
+
+        /**
+         * Mark the moment the headers of the response were received, for the clients without callbacks.
+         */
+        void headersReceived() {
+            headers = System.nanoTime();
+        }
+
+        /**
+         * Mark the moment the whole body of the response was received.
+         */
+        void bodyReceived() {
+            body = System.nanoTime();
+        }
+
+        /**
+         * Get the time since the start of the call, for a call that failed before its response.
+         * @return the time in nanoseconds
+         */
+        long elapsed() {
+            return System.nanoTime() - start;
+        }
+
+        /**
+         * Build the timings once the response is decoded.
+         * @param decode the time spent decoding the body, in nanoseconds.
+         * @return the timings
+         */
+        ResponseTimings finish(long decode) {
+            long end = System.nanoTime();
+            long bodyEnd = body != 0 ? body : end - decode;
+            long headersAt = headers != 0 ? headers : bodyEnd;
+            long sentAt = sent != 0 ? sent : request != 0 ? request : start;
+            long poolAcquire = request == 0 ? 0 : Math.max(0, request - start - dns - connect - tls);
+            return new ResponseTimings(poolAcquire, dns, connect, tls, span(sentAt, headersAt), span(headersAt, bodyEnd), decode, end - start, reused);
+        }
+
+        private static long span(long from, long to) {
+            return from == 0 || to == 0 ? 0 : Math.max(0, to - from);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package fr.sandro642.github.enums;
+
+import fr.sandro642.github.misc.VirtualThreads;
+import fr.sandro642.github.provider.ExecutorProvider;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CompletionType is an enumeration representing where the results of a job are delivered.
+ * A custom Executor can also be given by implementing ExecutorProvider.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public enum CompletionType implements ExecutorProvider {
+
+    /**
+     * Results are delivered on the thread that received the response, usually a Netty event loop.
+     * Lowest latency, but callbacks must never block.
+     */
+    EVENT_LOOP {
+        @Override
+        public Executor getExecutor() {
+            return Runnable::run;
+        }
+    },
+
+    /**
+     * Results are delivered on a dedicated pool of daemon threads, one per core.
+     * The number of threads is bounded, not the queue: when every thread is busy the callbacks wait for one,
+     * and never run on the thread that received the response, so they cannot block an event loop.
+     */
+    BOUNDED {
+        @Override
+        public Executor getExecutor() {
+            return BoundedPool.EXECUTOR;
+        }
+    },
+
+    /**
+     * Results are delivered on a new virtual thread (a daemon platform thread before JDK 21).
+     */
+    VIRTUAL_THREAD {
+        @Override
+        public Executor getExecutor() {
+            return VirtualThreads.executor();
+        }
+    };
+
+    /**
+     * Holder of the dedicated pool, created the first time BOUNDED is used.
+     */
+    private static final class BoundedPool {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        private static final Executor EXECUTOR = new ThreadPoolExecutor(
+                Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors(),
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "connectlib-callback-" + COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
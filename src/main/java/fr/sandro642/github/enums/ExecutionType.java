@@ -0,0 +1,26 @@
+package fr.sandro642.github.enums;
+
+/**
+ * ExecutionType is an enumeration representing the different ways a job can be executed.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public enum ExecutionType {
+
+    /**
+     * Default mode, the request runs on Reactor and the WebClient event loops.
+     */
+    REACTOR,
+
+    /**
+     * The request runs on Reactor, blocking callers are moved to virtual threads.
+     */
+    VIRTUAL_THREAD,
+
+    /**
+     * The request is made with the JDK HttpClient directly on a virtual thread, without Reactor.
+     */
+    JDK_HTTP_CLIENT
+}
@@ -0,0 +1,74 @@
+package fr.sandro642.github.enums;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.sandro642.github.provider.CodecProvider;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.function.Supplier;
+
+/**
+ * FormatType is an enumeration representing the wire formats supported out of the box.
+ * Binary formats are smaller and cheaper to decode than JSON, especially for numeric payloads.
+ * Mappers are built with Spring's Jackson2ObjectMapperBuilder, like the one of WebClient's JSON encoder,
+ * so bodies holding java.time values or Optionals are written the same way in every format.
+ * A custom format can also be given by implementing CodecProvider.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public enum FormatType implements CodecProvider {
+
+    /**
+     * JSON text, the default format.
+     */
+    JSON("application/json", () -> Jackson2ObjectMapperBuilder.json().build()),
+
+    /**
+     * CBOR (RFC 8949), a binary encoding of the JSON data model.
+     */
+    CBOR("application/cbor", () -> Jackson2ObjectMapperBuilder.cbor().build()),
+
+    /**
+     * Smile, the binary JSON format of Jackson.
+     */
+    SMILE("application/x-jackson-smile", () -> Jackson2ObjectMapperBuilder.smile().build()),
+
+    /**
+     * MessagePack, a compact binary format.
+     */
+    MSGPACK("application/msgpack", () -> Jackson2ObjectMapperBuilder.json().factory(new MessagePackFactory()).build());
+
+    private final String mediaType;
+    private final Supplier<ObjectMapper> factory;
+
+    /**
+     * Mapper of the format, created the first time it is used so unused formats load nothing.
+     */
+    private volatile ObjectMapper mapper;
+
+    FormatType(String mediaType, Supplier<ObjectMapper> factory) {
+        this.mediaType = mediaType;
+        this.factory = factory;
+    }
+
+    @Override
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public ObjectMapper getMapper() {
+        ObjectMapper current = mapper;
+        if (current == null) {
+            synchronized (this) {
+                if (mapper == null) {
+                    mapper = factory.get();
+                }
+                current = mapper;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,31 @@
+package fr.sandro642.github.enums;
+
+/**
+ * PaginationType is an enumeration representing how a paged route designates its next page.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public enum PaginationType {
+
+    /**
+     * A page number in the query, incremented until a page has no item.
+     */
+    PAGE,
+
+    /**
+     * An offset in the query, moved by the number of items received until a page is not full.
+     */
+    OFFSET,
+
+    /**
+     * A cursor read from the body of each page and sent back in the query, until it is missing.
+     */
+    CURSOR,
+
+    /**
+     * The URL of the next page given by the Link header (rel="next"), until there is none.
+     */
+    LINK
+}
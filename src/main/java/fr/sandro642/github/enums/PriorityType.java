@@ -0,0 +1,37 @@
+package fr.sandro642.github.enums;
+
+/**
+ * PriorityType is an enumeration representing the priority class of a request.
+ * Declared from the most to the least important: when capacity runs out, the last ones are shed first.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public enum PriorityType {
+
+    /**
+     * Gameplay or business critical calls, never shed while a lower priority request can be.
+     */
+    CRITICAL,
+
+    /**
+     * Important calls.
+     */
+    HIGH,
+
+    /**
+     * Default priority.
+     */
+    NORMAL,
+
+    /**
+     * Calls that can wait, shed when the queue is deep.
+     */
+    LOW,
+
+    /**
+     * Background calls such as telemetry, shed first.
+     */
+    BACKGROUND
+}
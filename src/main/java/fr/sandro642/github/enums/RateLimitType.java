@@ -0,0 +1,21 @@
+package fr.sandro642.github.enums;
+
+/**
+ * RateLimitType is an enumeration representing what a request does when its rate limit is reached.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public enum RateLimitType {
+
+    /**
+     * Wait for a token, up to the maximum delay, then fail if it is still not available.
+     */
+    WAIT,
+
+    /**
+     * Fail immediately when no token is available.
+     */
+    FAIL_FAST
+}
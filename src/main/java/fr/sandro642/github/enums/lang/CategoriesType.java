@@ -21,6 +21,8 @@ public enum CategoriesType {
     HOOKMANAGER_CLASS("hookmanager.class"),
     APIFACTORY_CLASS("apifactory.class"),
     APICLIENT_CLASS("apiclient.class"),
+    LIMIT_PACKAGE("limit.package"),
+    OUTBOX_PACKAGE("outbox.package"),
     ;
 
     /**
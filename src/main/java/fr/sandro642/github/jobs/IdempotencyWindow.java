@@ -0,0 +1,152 @@
+package fr.sandro642.github.jobs;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdempotencyWindow collapses duplicate submissions of the same logical operation.
+ * A mutating request carries an idempotency key; while the window is open, another request with the same key
+ * does not reach the server again but shares the in-flight call, or its response once received.
+ * Failed calls, 5xx and 429 responses are not kept, so a retry with the same key is sent again
+ * and the server can deduplicate it with the Idempotency-Key header.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class IdempotencyWindow {
+
+    /**
+     * Name of the header carrying the idempotency key.
+     */
+    public static final String HEADER = "Idempotency-Key";
+
+    /**
+     * Singleton instance of IdempotencyWindow.
+     */
+    private static final IdempotencyWindow INSTANCE = new IdempotencyWindow();
+
+    /**
+     * Get the singleton instance of IdempotencyWindow.
+     * @return the singleton instance
+     */
+    public static IdempotencyWindow getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Number of keys above which expired entries are swept on insertion.
+     */
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Calls by idempotency key.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * How long a key collapses duplicates after its first submission.
+     */
+    private volatile Duration window = Duration.ofMinutes(1);
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private IdempotencyWindow() {}
+
+    /**
+     * Set how long a key collapses duplicates after its first submission.
+     * @param window the duration of the window, zero to disable deduplication.
+     * @return IdempotencyWindow for chaining
+     */
+    public IdempotencyWindow setWindow(Duration window) {
+        if (window == null || window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Get how long a key collapses duplicates after its first submission.
+     * @return the duration of the window
+     */
+    public Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * Generate a new idempotency key.
+     * @return a random key
+     */
+    public String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Share the call with every other submission of the same key while the window is open.
+     * @param key the idempotency key.
+     * @param fingerprint a description of the request; a key reused for a different request is rejected.
+     * @param call the lazy call.
+     * @return the deduplicated call.
+     */
+    public Mono<ApiFactory> deduplicate(String key, String fingerprint, Mono<ApiFactory> call) {
+        Duration window = this.window;
+        if (key == null || window.isZero()) {
+            return call;
+        }
+
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+
+            if (entries.size() > SWEEP_THRESHOLD) {
+                entries.values().removeIf(entry -> entry.isExpired(now));
+            }
+
+            Entry entry = entries.compute(key, (k, existing) -> existing != null && !existing.isExpired(now)
+                    ? existing
+                    : new Entry(fingerprint, now + window.toNanos(), call.cache(
+                            response -> isReusable(response) ? window : Duration.ZERO,
+                            error -> Duration.ZERO,
+                            () -> Duration.ZERO)));
+
+            if (!entry.fingerprint.equals(fingerprint)) {
+                String message = connectLib.LangManager().getMessage(CategoriesType.JOBS_PACKAGE, "idempotency.mismatch", "key", key);
+                connectLib.Logger().WARN(message);
+                return Mono.error(new IllegalArgumentException(message));
+            }
+
+            return entry.shared;
+        });
+    }
+
+    /**
+     * Checks if a response may be handed to a duplicate submission instead of sending it again.
+     */
+    private boolean isReusable(ApiFactory response) {
+        int statusCode = response.getStatusCode();
+        return statusCode < 500 && statusCode != 429;
+    }
+
+    /**
+     * The shared call of one key.
+     */
+    private record Entry(String fingerprint, long expiresAt, Mono<ApiFactory> shared) {
+
+        private boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -1,16 +1,47 @@
 package fr.sandro642.github.jobs;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import fr.sandro642.github.ConnectLib;
 import fr.sandro642.github.api.ApiClient;
 import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.api.JdkApiClient;
+import fr.sandro642.github.api.Projection;
+import fr.sandro642.github.enums.CompletionType;
+import fr.sandro642.github.enums.ExecutionType;
+import fr.sandro642.github.enums.FormatType;
 import fr.sandro642.github.enums.MethodType;
+import fr.sandro642.github.enums.PriorityType;
+import fr.sandro642.github.enums.RateLimitType;
 import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.limit.AdmissionController;
+import fr.sandro642.github.limit.RouteGroup;
+import fr.sandro642.github.misc.VirtualThreads;
+import fr.sandro642.github.outbox.OutboxEntry;
+import fr.sandro642.github.provider.ExecutorProvider;
+import fr.sandro642.github.provider.ProgressListener;
 import fr.sandro642.github.provider.URLProvider;
 import fr.sandro642.github.provider.VersionProvider;
-
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,12 +55,6 @@ import java.util.regex.Pattern;
 
 public class JobGetInfos {
 
-    /**
-     * ApiClient is used to make API calls.
-     * It is initialized in the constructor of JobGetInfos.
-     */
-    private ApiClient apiClient;
-
     /**
      * connectLib instance to access its methods and properties.
      */
@@ -43,6 +68,48 @@ public class JobGetInfos {
 
     private String fullRoute = "";
 
+    /**
+     * How the job is executed, REACTOR by default.
+     */
+    private ExecutionType executionType = ExecutionType.REACTOR;
+
+    /**
+     * Where the results are delivered.
+     * If not set, execute() completes its future on CompletionType.BOUNDED and executeMono() does not switch threads.
+     */
+    private ExecutorProvider completion;
+
+    /**
+     * Priority class of the request, used by the admission queue to decide what to shed first.
+     */
+    private PriorityType priority = PriorityType.NORMAL;
+
+    /**
+     * What to do when the route or base URL rate limit has no token left, and how long to wait for one at most.
+     */
+    private RateLimitType rateLimitType = RateLimitType.WAIT;
+    private Duration maxRateLimitDelay = Duration.ofSeconds(10);
+
+    /**
+     * Idempotency key given by the caller for a mutating request, null to generate a new one per execution.
+     */
+    private String idempotencyKey;
+
+    /**
+     * True to send a mutating request through the durable outbox.
+     */
+    private boolean durable;
+
+    /**
+     * Listener of the progress of a download or an upload, can be null.
+     */
+    private ProgressListener progress;
+
+    /**
+     * Paths kept when parsing the response, null to parse it whole.
+     */
+    private Projection projection;
+
     /**
      * Constructor of JobGetInfos.
      * Initializes the ApiClient and loads the YAML configuration.
@@ -90,6 +157,7 @@ public class JobGetInfos {
             }
 
             connectLib.StoreAndRetrieve().store.put("currentRoute", this.fullRoute);
+            connectLib.StoreAndRetrieve().store.put("currentRouteName", routeName.toString().toLowerCase());
             connectLib.StoreAndRetrieve().store.put("currentMethod", methodType);
 
             connectLib.Logger().INFO(connectLib.LangManager().getMessage(CategoriesType.JOBS_PACKAGE, "getroutes.maderoute", "route", fullRoute));
@@ -99,6 +167,12 @@ public class JobGetInfos {
         return this;
     }
 
+    /**
+     * Set the body of the request.
+     * A PreparedBody sent many times is serialized only once.
+     * @param body The body, sent for POST, PUT and PATCH.
+     * @return JobGetInfos for chaining
+     */
     public JobGetInfos body(Map<?, ?> body) {
         connectLib.StoreAndRetrieve().store.put("currentBody", body);
         return this;
@@ -161,89 +235,695 @@ public class JobGetInfos {
         return this;
     }
 
+    /**
+     * Set how the job is executed.
+     * With VIRTUAL_THREAD or JDK_HTTP_CLIENT, execute() runs the request flow on a virtual thread,
+     * so callbacks chained on the returned future never run on a Netty event loop.
+     * @param executionType The execution type to use, REACTOR by default.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos executionType(ExecutionType executionType) {
+        this.executionType = executionType == null ? ExecutionType.REACTOR : executionType;
+        return this;
+    }
+
+    /**
+     * Set where the results of the job are delivered.
+     * Use CompletionType.EVENT_LOOP for low-latency non-blocking callbacks, CompletionType.BOUNDED for a dedicated pool,
+     * CompletionType.VIRTUAL_THREAD for virtual threads, or any ExecutorProvider of your own.
+     * @param completion The ExecutorProvider on which the results are delivered.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos completeOn(ExecutorProvider completion) {
+        this.completion = completion;
+        return this;
+    }
+
+    /**
+     * Set the executor on which the results of the job are delivered.
+     * @param executor The Executor on which the results are delivered.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos completeOn(Executor executor) {
+        this.completion = executor == null ? null : () -> executor;
+        return this;
+    }
+
+    /**
+     * Set the priority class of the request.
+     * Requests are scheduled through the admission queue: the most important ones are started first,
+     * and LOW or BACKGROUND requests are shed first when the queue is deep or the limit is reached.
+     * @param priority The priority class, NORMAL by default.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos priority(PriorityType priority) {
+        this.priority = priority == null ? PriorityType.NORMAL : priority;
+        return this;
+    }
+
+    /**
+     * Set the behaviour when the rate limit of the route or of the base URL declared in infos.yml is reached.
+     * With WAIT the request is delayed until a token is available, and fails if that takes longer than maxDelay.
+     * With FAIL_FAST it fails immediately with a RequestRejectedException.
+     * @param rateLimitType What to do when no token is available, WAIT by default.
+     * @param maxDelay The longest to wait for a token, 10 seconds by default.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos rateLimit(RateLimitType rateLimitType, Duration maxDelay) {
+        this.rateLimitType = rateLimitType == null ? RateLimitType.WAIT : rateLimitType;
+        this.maxRateLimitDelay = maxDelay == null ? Duration.ofSeconds(10) : maxDelay;
+        return this;
+    }
+
+    /**
+     * Set the idempotency key of a POST, PUT or PATCH request, sent in the Idempotency-Key header.
+     * Without it, a new key is generated for every execution.
+     * With it, submissions of the same key within the idempotency window are collapsed into a single call
+     * and share its response, so the same logical operation is never applied twice.
+     * @param idempotencyKey The key identifying the logical operation, e.g. an order id.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos idempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+        return this;
+    }
+
+    /**
+     * Send a POST, PUT or PATCH request through the durable outbox, if it is enabled in infos.yml.
+     * The request is written to disk before it is sent, and sent in order after the requests recorded before it,
+     * so it survives an outage of the upstream or a restart. The response is only received if it arrives
+     * while this process runs; cancelling does not withdraw the request.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos durable() {
+        this.durable = true;
+        return this;
+    }
+
+    /**
+     * Set the listener receiving the progress of a download or an upload.
+     * @param progress The listener, called with the bytes transferred so far and the total, or -1 if unknown.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos onProgress(ProgressListener progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Parse only part of the response: values outside the given paths are skipped while parsing,
+     * which saves most of the work when a few fields are read from a large response.
+     * Fields outside the paths are absent from the response, and array elements outside them are null.
+     * @param paths The paths to keep, e.g. `$.guild.members[0].name`.
+     * @return JobGetInfos for chaining
+     * @throws IllegalArgumentException if a path is not valid.
+     */
+    public JobGetInfos project(String... paths) {
+        return project(Projection.of(paths));
+    }
+
+    /**
+     * Parse only part of the response, keeping the values of a projection built once and reused.
+     * @param projection The projection, null to parse the response whole.
+     * @return JobGetInfos for chaining
+     */
+    public JobGetInfos project(Projection projection) {
+        this.projection = projection;
+        return this;
+    }
+
     /**
      * Get the response from the API based on the current route and method.
-     * This method retrieves the stored route, method, and body from the store,
-     * makes the API call, and returns the response as an ApiFactory object.
+     * This method is a thin adapter over {@link #executeMono()}.
+     * Cancelling the returned future aborts the underlying HTTP exchange.
      * @return ApiFactory containing the response from the API, or null if an error occurs.
      */
     public CompletableFuture<ApiFactory> execute() {
         try {
-            String route = (String) connectLib.StoreAndRetrieve().store.get("currentRoute");
-            MethodType method = (MethodType) connectLib.StoreAndRetrieve().store.get("currentMethod");
-            Map<String, Object> body = (Map<String, Object>) connectLib.StoreAndRetrieve().store.get("currentBody");
+            CompletableFuture<ApiFactory> responseFuture = new CompletableFuture<>();
+
+            if (executionType != ExecutionType.REACTOR) {
+                PreparedCall call = prepareCall();
+
+                Executor executor = completion == null ? Runnable::run : completion.getExecutor();
 
-            if (route == null || method == null) {
-                connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.JOBS_PACKAGE, "getresponse.mustbe"));
+                Future<?> task = VirtualThreads.executor().submit(() -> {
+                    try {
+                        ApiFactory response = blocking(call);
+                        executor.execute(() -> responseFuture.complete(response));
+                    } catch (Throwable error) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        executor.execute(() -> responseFuture.completeExceptionally(cause));
+                    }
+                });
+
+                // Interrupting the virtual thread aborts the blocking exchange.
+                responseFuture.whenComplete((response, error) -> {
+                    if (!task.isDone()) task.cancel(true);
+                });
+
+                return responseFuture;
             }
 
-            /** Determine the URL branch to use */
-            String urlBranchLambda;
+            Executor executor = (completion == null ? CompletionType.BOUNDED : completion).getExecutor();
+
+            // The future is completed on the chosen executor, so user callbacks never stall a Netty event loop.
+            Disposable subscription = executeMono(false).subscribe(
+                    response -> executor.execute(() -> responseFuture.complete(response)),
+                    error -> executor.execute(() -> responseFuture.completeExceptionally(error))
+            );
+
+            // Cancelling the future (or completing it from outside, e.g. orTimeout) disposes the
+            // subscription, which aborts the exchange and gives the pooled connection back right away.
+            responseFuture.whenComplete((response, error) -> subscription.dispose());
 
-            if (urlBranch == null) {
-                urlBranchLambda = (String) connectLib.StoreAndRetrieve().store.get(connectLib.StoreAndRetrieve().URL_KEY);
+            return responseFuture;
+
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Get the response from the API, blocking the calling thread until it is received.
+     * This is meant for simple blocking code running on virtual threads: the thread parks while the request is in flight.
+     * With JDK_HTTP_CLIENT the request is made with the JDK HttpClient instead of Reactor.
+     * @return ApiFactory containing the response from the API.
+     * @throws CompletionException wrapping the error if the request fails.
+     */
+    public ApiFactory executeBlocking() {
+        return blocking(prepareCall());
+    }
+
+    /**
+     * Get the response from the API as a lazy Mono.
+     * The route, method and body are captured now, but the HTTP call is only made when the Mono is subscribed,
+     * and disposing the subscription aborts the exchange.
+     * The result is emitted on the thread that received the response, unless completeOn() was called.
+     * @return a Mono emitting the ApiFactory containing the response from the API.
+     */
+    public Mono<ApiFactory> executeMono() {
+        return executeMono(true);
+    }
+
+    /**
+     * Builds the lazy Mono of the call.
+     * @param deliver true to deliver the result on the executor set with completeOn(), if any.
+     * @return a Mono emitting the ApiFactory containing the response from the API.
+     */
+    private Mono<ApiFactory> executeMono(boolean deliver) {
+        try {
+            PreparedCall call = prepareCall();
+            Mono<ApiFactory> response;
+
+            if (isDurable(call)) {
+                response = outboxed(call);
+            } else if (executionType == ExecutionType.JDK_HTTP_CLIENT) {
+                response = Mono.fromCallable(() -> blocking(call))
+                        .subscribeOn(VirtualThreads.scheduler());
             } else {
-                urlBranchLambda = urlBranch.getURL();
+                response = deduplicated(call, rateLimited(call, admitted(call, newApiClient(call).callAPI(call.method(), call.route(), call.body(), call.headers()))));
             }
-            apiClient = new ApiClient(urlBranchLambda);
 
-            CompletableFuture<ApiFactory> responseFuture = new CompletableFuture<>();
+            if (deliver && completion != null && completion != CompletionType.EVENT_LOOP) {
+                response = response.publishOn(Schedulers.fromExecutor(completion.getExecutor()));
+            }
+            return response;
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Get the response of a streaming route (newline-delimited JSON or server-sent events) as a lazy Flux.
+     * Each streamed element is emitted as its own ApiFactory as soon as it is received.
+     * The HTTP call is only made when the Flux is subscribed, and cancelling it closes the exchange.
+     * Streaming always runs on Reactor, whatever the execution type.
+     * @return a Flux emitting one ApiFactory per streamed element.
+     */
+    public Flux<ApiFactory> executeFlux() {
+        try {
+            PreparedCall call = prepareCall();
+            Flux<ApiFactory> elements = newApiClient(call).streamAPI(call.method(), call.route(), call.body(), call.headers());
 
-            // Callback to clean up the store after the response
-            Consumer<ApiFactory> onSuccess = response -> {
-                connectLib.StoreAndRetrieve().store.remove("currentRoute");
-                connectLib.StoreAndRetrieve().store.remove("currentMethod");
-                connectLib.StoreAndRetrieve().store.remove("currentBody");
-                responseFuture.complete(response);
-            };
-
-            Consumer<Throwable> onError = error -> {
-                connectLib.StoreAndRetrieve().store.remove("currentRoute");
-                connectLib.StoreAndRetrieve().store.remove("currentMethod");
-                connectLib.StoreAndRetrieve().store.remove("currentBody");
-                responseFuture.completeExceptionally(error);
-            };
-
-            switch(method) {
-                case GET:
-                    apiClient.callAPIGet(route).subscribe(
-                            response -> onSuccess.accept(response),
-                            onError
-                    );
-                    break;
-                case POST:
-                    apiClient.callAPIPost(route, body).subscribe(
-                            response -> onSuccess.accept(response),
-                            onError
-                    );
-                    break;
-                case PUT:
-                    apiClient.callAPIPut(route, body).subscribe(
-                            response -> onSuccess.accept(response),
-                            onError
-                    );
-                    break;
-                case PATCH:
-                    apiClient.callAPIPatch(route, body).subscribe(
-                            response -> onSuccess.accept(response),
-                            onError
-                    );
-                    break;
-                case DELETE:
-                    apiClient.callAPIDelete(route).subscribe(
-                            response -> onSuccess.accept(response),
-                            onError
-                    );
-                    break;
-                default:
-                    connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.JOBS_PACKAGE, "getresponse.error", "type", method.toString()));
-                    System.exit(2);
+            if (completion != null && completion != CompletionType.EVENT_LOOP) {
+                elements = elements.publishOn(Schedulers.fromExecutor(completion.getExecutor()));
             }
+            return elements;
+        } catch (Exception e) {
+            return Flux.error(e);
+        }
+    }
 
-            return responseFuture;
+    /**
+     * Poll the route at a fixed interval and get its content each time it changes.
+     * Every subscriber polling the same rendered route at the same interval shares a single schedule,
+     * which stops when the last subscriber cancels. Requests are conditional (ETag, Last-Modified),
+     * so an unchanged resource costs a 304 and is not emitted again.
+     * @param interval The delay between two requests.
+     * @return a Flux emitting the ApiFactory each time the content of the route changes.
+     */
+    public Flux<ApiFactory> poll(Duration interval) {
+        try {
+            if (interval == null || interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("interval must be positive");
+            }
+
+            PreparedCall call = prepareCall();
+            String key = call.fingerprint() + " every " + interval.toMillis() + "ms";
 
+            Flux<ApiFactory> changes = connectLib.PollingEngine().poll(key, interval, conditionalHeaders ->
+                    rateLimited(call, admitted(call, newApiClient(call).callAPI(call.method(), call.route(), call.body(), conditionalHeaders))));
+
+            if (completion != null && completion != CompletionType.EVENT_LOOP) {
+                changes = changes.publishOn(Schedulers.fromExecutor(completion.getExecutor()));
+            }
+            return changes;
         } catch (Exception e) {
-            return CompletableFuture.failedFuture(e);
+            return Flux.error(e);
         }
     }
+
+    /**
+     * Download the body of the route straight to a file, without holding it in memory.
+     * Suited for large binary assets such as resource packs or schematics.
+     * With resume, an incomplete file is continued with a Range request instead of being downloaded again.
+     * The HTTP call is only made when the Mono is subscribed, and cancelling it closes the exchange.
+     * @param target The file to write.
+     * @param resume true to continue an incomplete file, false to replace it.
+     * @return a Mono emitting the size of the file once the download is complete.
+     */
+    public Mono<Long> download(Path target, boolean resume) {
+        try {
+            PreparedCall call = prepareCall();
+            return delivered(gated(call, newApiClient(call).downloadAPI(call.method(), call.route(), call.body(), target, resume, progress)));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Download the body of the route straight to a channel, e.g. a FileChannel, without holding it in memory.
+     * The channel is not closed once the download is complete.
+     * @param channel The channel to write.
+     * @return a Mono emitting the number of bytes written once the download is complete.
+     */
+    public Mono<Long> download(WritableByteChannel channel) {
+        try {
+            PreparedCall call = prepareCall();
+            return delivered(gated(call, newApiClient(call).downloadAPI(call.method(), call.route(), call.body(), channel, progress)));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Upload a file as the body of the route, without holding it in memory, and get the JSON response.
+     * Suited for large binary assets such as resource packs, schematics or world backups.
+     * The HTTP call is only made when the Mono is subscribed, and cancelling it closes the exchange.
+     * @param file The file to send.
+     * @param contentType The content type of the file, or null to guess it from the file name.
+     * @return a Mono emitting the ApiFactory containing the response from the API.
+     */
+    public Mono<ApiFactory> upload(Path file, String contentType) {
+        try {
+            PreparedCall call = prepareCall();
+            MediaType mediaType = contentType == null ? null : MediaType.parseMediaType(contentType);
+            return uploaded(call, newApiClient(call).uploadAPI(call.method(), call.route(), file, mediaType, progress, call.headers()));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Upload a stream of buffers as the body of the route and get the JSON response.
+     * The buffers are sent as they are produced, so a generated or proxied body is never held in memory.
+     * @param chunks The buffers of the body, released once sent.
+     * @param contentType The content type of the body, or null for application/octet-stream.
+     * @return a Mono emitting the ApiFactory containing the response from the API.
+     */
+    public Mono<ApiFactory> upload(Publisher<DataBuffer> chunks, String contentType) {
+        try {
+            PreparedCall call = prepareCall();
+            MediaType mediaType = contentType == null ? null : MediaType.parseMediaType(contentType);
+            return uploaded(call, newApiClient(call).uploadAPI(call.method(), call.route(), chunks, mediaType, progress, call.headers()));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Upload a multipart/form-data body and get the JSON response.
+     * A Path value is sent as a file part and a Publisher of DataBuffer as a streamed part, both without being held in memory;
+     * any other value is sent as a plain part.
+     * @param parts The parts of the body, by name.
+     * @return a Mono emitting the ApiFactory containing the response from the API.
+     */
+    public Mono<ApiFactory> uploadMultipart(Map<String, Object> parts) {
+        try {
+            PreparedCall call = prepareCall();
+            return uploaded(call, newApiClient(call).uploadMultipartAPI(call.method(), call.route(), parts, call.headers()));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Walk through a paged route and get its items one by one.
+     * The next page is requested while the items of the current one are consumed, up to the prefetch depth of
+     * the pagination, and nothing more is requested once the subscriber cancels.
+     * The Flux fails if a page answers with an error status.
+     * @param pagination How the route designates its pages and where its items are.
+     * @return a Flux emitting the items of every page, in order.
+     */
+    public Flux<Object> paginate(Pagination pagination) {
+        try {
+            PreparedCall call = prepareCall();
+
+            Flux<Object> items = page(call, pagination, pagination.first(call.route()), 1)
+                    .expand(page -> {
+                        if (page.index() >= pagination.getMaxPages()) return Mono.empty();
+                        String next = pagination.next(page.route(), page.response(), page.items(), call.baseUrl());
+                        return next == null ? Mono.empty() : page(call, pagination, next, page.index() + 1);
+                    })
+                    .concatMapIterable(Page::items, pagination.getPrefetch() + 1);
+
+            if (completion != null && completion != CompletionType.EVENT_LOOP) {
+                items = items.publishOn(Schedulers.fromExecutor(completion.getExecutor()));
+            }
+            return items;
+        } catch (Exception e) {
+            return Flux.error(e);
+        }
+    }
+
+    /**
+     * A received page.
+     */
+    private record Page(String route, ApiFactory response, List<Object> items, long index) {}
+
+    /**
+     * Fetches one page of a paged route.
+     * @param call The prepared call.
+     * @param pagination The pagination.
+     * @param route The route of the page.
+     * @param index The number of the page, starting at 1.
+     * @return a Mono emitting the page.
+     */
+    @SuppressWarnings("unchecked")
+    private Mono<Page> page(PreparedCall call, Pagination pagination, String route, long index) {
+        // Starting from a hidden Mono.just defers the request until the page is requested, not merely subscribed.
+        return Mono.just(route).hide()
+                .flatMap(pageRoute -> rateLimited(call, admitted(call, newApiClient(call).callAPI(call.method(), pageRoute, call.body(), Map.of()))))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Page " + route + " has no body")))
+                .flatMap(response -> {
+                    int statusCode = response.getStatusCode();
+                    if (statusCode < 200 || statusCode >= 300) {
+                        return Mono.error(new IllegalStateException("Page " + route + " answered with status " + statusCode));
+                    }
+                    return Mono.just(new Page(route, response, (List<Object>) pagination.itemsOf(response), index));
+                });
+    }
+
+    /**
+     * Snapshot of everything needed to make the call, taken when the job is executed.
+     */
+    private record PreparedCall(String baseUrl, MethodType method, String routeName, String route, Map<String, Object> body,
+                                String idempotencyKey, boolean deduplicated) {
+
+        /**
+         * Headers added to the request.
+         */
+        private Map<String, String> headers() {
+            return idempotencyKey == null ? Map.of() : Map.of(IdempotencyWindow.HEADER, idempotencyKey);
+        }
+
+        /**
+         * Description of the request, used to detect an idempotency key reused for a different request.
+         * The body is described by a SHA-256 digest of its JSON encoding with sorted keys, so two equal bodies
+         * always match and two different ones never collide by accident.
+         */
+        private String fingerprint() {
+            return method + " " + baseUrl + route + " " + digest(body);
+        }
+
+        private static String digest(Map<String, Object> body) {
+            if (body == null) {
+                return "-";
+            }
+            try {
+                byte[] encoded = FormatType.JSON.getMapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsBytes(body);
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(encoded));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Body of the request cannot be serialized to JSON", e);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Makes the call on the current thread and blocks until the response is received.
+     * @param call The prepared call.
+     * @return ApiFactory containing the response from the API.
+     */
+    private ApiFactory blocking(PreparedCall call) {
+        try {
+            if (isDurable(call)) {
+                return outboxed(call).block();
+            }
+            if (executionType == ExecutionType.JDK_HTTP_CLIENT) {
+                return call.deduplicated() ? deduplicated(call, Mono.fromCallable(() -> jdkCall(call))).block() : jdkCall(call);
+            }
+            return deduplicated(call, rateLimited(call, admitted(call, newApiClient(call).callAPI(call.method(), call.route(), call.body(), call.headers())))).block();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Makes the call with the JDK HttpClient on the current thread, within the rate limits and the admission queue,
+     * compressing the request body like ApiClient if the route opted in.
+     * @param call The prepared call.
+     * @return ApiFactory containing the response from the API.
+     * @throws Exception if the request fails or the calling thread is interrupted.
+     */
+    private ApiFactory jdkCall(PreparedCall call) throws Exception {
+        connectLib.RateLimiterManager().acquire(call.routeName(), call.baseUrl(), rateLimitType, maxRateLimitDelay).block();
+        AdmissionController.Permit permit = admission(call).acquire(priority).block();
+        try {
+            ApiFactory response = new JdkApiClient(call.baseUrl())
+                    .codec(connectLib.Codecs().codecOf(call.routeName(), call.baseUrl()))
+                    .compressRequestsAbove(connectLib.Compression().thresholdOf(call.routeName()))
+                    .project(projection)
+                    .routeName(call.routeName())
+                    .callAPI(call.method(), call.route(), call.body(), call.headers());
+            permit.release(isHealthy(response));
+            reportRateLimit(call, response);
+            return response;
+        } catch (Exception e) {
+            permit.release(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Collapses the call with the other submissions of the same idempotency key, when the key was given by the caller.
+     * @param call The prepared call.
+     * @param response The lazy call.
+     * @return the deduplicated call.
+     */
+    private Mono<ApiFactory> deduplicated(PreparedCall call, Mono<ApiFactory> response) {
+        if (!call.deduplicated()) return response;
+        return connectLib.IdempotencyWindow().deduplicate(call.idempotencyKey(), call.fingerprint(), response);
+    }
+
+    /**
+     * Runs an upload through the same rate limits, admission queue and idempotency window as a regular call.
+     * @param call The prepared call.
+     * @param upload The lazy upload.
+     * @return the upload, delivered on the executor set with completeOn(), if any.
+     */
+    private Mono<ApiFactory> uploaded(PreparedCall call, Mono<ApiFactory> upload) {
+        return delivered(deduplicated(call, rateLimited(call, occupying(call, upload))));
+    }
+
+    /**
+     * Runs a transfer within the rate limits and the admission queue of the route.
+     * @param call The prepared call.
+     * @param transfer The lazy transfer.
+     * @return the gated transfer.
+     */
+    private <T> Mono<T> gated(PreparedCall call, Mono<T> transfer) {
+        return connectLib.RateLimiterManager().acquire(call.routeName(), call.baseUrl(), rateLimitType, maxRateLimitDelay)
+                .then(occupying(call, transfer));
+    }
+
+    /**
+     * Holds an admission permit of the route until a transfer ends, fails or is cancelled.
+     * The permit is discarded rather than released: a transfer lasts as long as its body takes to be sent or received,
+     * so its duration and outcome say nothing about the upstream and must not change the limit.
+     * @param call The prepared call.
+     * @param transfer The lazy transfer.
+     * @return the admitted transfer.
+     */
+    private <T> Mono<T> occupying(PreparedCall call, Mono<T> transfer) {
+        return admission(call).acquire(priority)
+                .flatMap(permit -> transfer.doFinally(signal -> permit.discard()));
+    }
+
+    /**
+     * Delivers the result of a Mono on the executor set with completeOn(), if any.
+     * @param result The lazy result.
+     * @return the result, delivered on the chosen executor.
+     */
+    private <T> Mono<T> delivered(Mono<T> result) {
+        if (completion != null && completion != CompletionType.EVENT_LOOP) {
+            return result.publishOn(Schedulers.fromExecutor(completion.getExecutor()));
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the call goes through the durable outbox: durable() was called, the method is mutating
+     * and the outbox is enabled. Otherwise the call is sent directly.
+     * @param call The prepared call.
+     * @return true if the call is recorded in the outbox.
+     */
+    private boolean isDurable(PreparedCall call) {
+        return durable && call.idempotencyKey() != null && connectLib.Outbox().isEnabled();
+    }
+
+    /**
+     * Records the call in the durable outbox, collapsed with the other submissions of its idempotency key.
+     * @param call The prepared call.
+     * @return a Mono emitting the response once the call is delivered.
+     */
+    private Mono<ApiFactory> outboxed(PreparedCall call) {
+        OutboxEntry entry = new OutboxEntry(call.baseUrl(), call.method(), call.routeName(), call.route(), call.body(), call.idempotencyKey(), System.currentTimeMillis());
+        return deduplicated(call, connectLib.Outbox().send(entry));
+    }
+
+    /**
+     * Get the admission controller in charge of this request:
+     * the one of the route's group if the route belongs to a group, the shared one otherwise.
+     * @param call The prepared call.
+     * @return the AdmissionController
+     */
+    private AdmissionController admission(PreparedCall call) {
+        RouteGroup group = connectLib.RouteGroupManager().groupOf(call.routeName());
+        return group != null ? group.getAdmissionController() : connectLib.AdmissionController();
+    }
+
+    /**
+     * Creates the ApiClient for the call, on the route group's own connection pool if the route belongs to a group,
+     * in the wire format of the route, compressing the request body if the route opted in,
+     * parsing only the projection of the response, if any, and tagging the call with the name of the route.
+     * @param call The prepared call.
+     * @return the ApiClient
+     */
+    private ApiClient newApiClient(PreparedCall call) {
+        RouteGroup group = connectLib.RouteGroupManager().groupOf(call.routeName());
+        ApiClient client = group != null ? new ApiClient(call.baseUrl(), group.getConnectionProvider()) : new ApiClient(call.baseUrl());
+        return client.codec(connectLib.Codecs().codecOf(call.routeName(), call.baseUrl()))
+                .compressRequestsAbove(connectLib.Compression().thresholdOf(call.routeName()))
+                .project(projection)
+                .routeName(call.routeName());
+    }
+
+    /**
+     * Schedules the call through the admission queue: it only starts once a permit is granted,
+     * and the permit is released when the call ends, fails or is cancelled.
+     * @param call The prepared call.
+     * @param response The lazy call.
+     * @return the admitted call.
+     */
+    private Mono<ApiFactory> admitted(PreparedCall call, Mono<ApiFactory> response) {
+        return admission(call).acquire(priority)
+                .flatMap(permit -> response
+                        .doOnSuccess(result -> permit.release(result == null || isHealthy(result)))
+                        .doOnError(error -> permit.release(false))
+                        .doOnCancel(permit::discard));
+    }
+
+    /**
+     * Takes a token from the rate limits of the route and of the base URL before the call is admitted,
+     * so a request waiting for a token does not hold an admission permit.
+     * @param call The prepared call.
+     * @param response The admitted call.
+     * @return the rate limited call.
+     */
+    private Mono<ApiFactory> rateLimited(PreparedCall call, Mono<ApiFactory> response) {
+        return connectLib.RateLimiterManager().acquire(call.routeName(), call.baseUrl(), rateLimitType, maxRateLimitDelay)
+                .then(response)
+                .doOnNext(result -> reportRateLimit(call, result));
+    }
+
+    /**
+     * Reports the response to the rate limits, so a 429 slows down the following requests.
+     * @param call The prepared call.
+     * @param response The response.
+     */
+    private void reportRateLimit(PreparedCall call, ApiFactory response) {
+        connectLib.RateLimiterManager().onResponse(call.routeName(), call.baseUrl(), response.getStatusCode(), response.getHeader("Retry-After"));
+    }
+
+    /**
+     * Checks if a response shows a healthy upstream, i.e. neither a server error nor a 429.
+     * @param response The response.
+     * @return true if the upstream is not saturated.
+     */
+    private boolean isHealthy(ApiFactory response) {
+        int statusCode = response.getStatusCode();
+        return statusCode < 500 && statusCode != 429;
+    }
+
+    /**
+     * Retrieves the stored route, method and body from the store, clears them,
+     * and determines the URL branch to use.
+     * @return the prepared call.
+     */
+    private PreparedCall prepareCall() {
+        String route = (String) connectLib.StoreAndRetrieve().store.get("currentRoute");
+        String routeName = (String) connectLib.StoreAndRetrieve().store.get("currentRouteName");
+        MethodType method = (MethodType) connectLib.StoreAndRetrieve().store.get("currentMethod");
+        Map<String, Object> body = (Map<String, Object>) connectLib.StoreAndRetrieve().store.get("currentBody");
+
+        connectLib.StoreAndRetrieve().store.remove("currentRoute");
+        connectLib.StoreAndRetrieve().store.remove("currentRouteName");
+        connectLib.StoreAndRetrieve().store.remove("currentMethod");
+        connectLib.StoreAndRetrieve().store.remove("currentBody");
+
+        if (route == null || method == null) {
+            String message = connectLib.LangManager().getMessage(CategoriesType.JOBS_PACKAGE, "getresponse.mustbe");
+            connectLib.Logger().ERROR(message);
+            throw new IllegalStateException(message);
+        }
+
+        /** Determine the URL branch to use */
+        String urlBranchLambda;
+
+        if (urlBranch == null) {
+            urlBranchLambda = (String) connectLib.StoreAndRetrieve().store.get(connectLib.StoreAndRetrieve().URL_KEY);
+        } else {
+            urlBranchLambda = urlBranch.getURL();
+        }
+
+        /** Mutating requests carry an idempotency key, so the server can recognise a retried request */
+        String key = null;
+        switch (method) {
+            case POST, PUT, PATCH:
+                key = idempotencyKey != null ? idempotencyKey : connectLib.IdempotencyWindow().newKey();
+                break;
+            default:
+                break;
+        }
+
+        return new PreparedCall(urlBranchLambda, method, routeName, route, body, key, key != null && idempotencyKey != null);
+    }
 }
@@ -0,0 +1,229 @@
+package fr.sandro642.github.jobs;
+
+import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.enums.PaginationType;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pagination describes how to walk through a paged route with JobGetInfos.paginate().
+ * It is built with one of the static methods, then refined by chaining:
+ *
+ * <pre>
+ * Pagination.page("page", 1).items("data").prefetch(2)
+ * Pagination.offset("offset", "limit", 100).items("results")
+ * Pagination.cursor("cursor", "meta.next_cursor").items("data")
+ * Pagination.link().items("items")
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class Pagination {
+
+    /**
+     * Link header pattern, capturing the URL of each link and its rel parameter.
+     */
+    private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>\\s*((?:;\\s*[^,;]+)*)");
+    private static final Pattern REL_PATTERN = Pattern.compile("rel\\s*=\\s*\"?([^\";]+)\"?");
+
+    private final PaginationType type;
+    private final String param;
+    private String limitParam;
+    private long start;
+    private int limit;
+    private String cursorField;
+    private String itemsField = "items";
+    private int prefetch = 1;
+    private long maxPages = Long.MAX_VALUE;
+
+    private Pagination(PaginationType type, String param) {
+        this.type = type;
+        this.param = param;
+    }
+
+    /**
+     * Pages designated by a number in the query.
+     * @param pageParam the name of the query parameter, e.g. "page".
+     * @param firstPage the number of the first page, usually 0 or 1.
+     * @return Pagination for chaining
+     */
+    public static Pagination page(String pageParam, int firstPage) {
+        Pagination pagination = new Pagination(PaginationType.PAGE, pageParam);
+        pagination.start = firstPage;
+        return pagination;
+    }
+
+    /**
+     * Pages designated by an offset and a page size in the query.
+     * @param offsetParam the name of the offset query parameter, e.g. "offset".
+     * @param limitParam the name of the page size query parameter, e.g. "limit".
+     * @param limit the number of items per page.
+     * @return Pagination for chaining
+     */
+    public static Pagination offset(String offsetParam, String limitParam, int limit) {
+        Pagination pagination = new Pagination(PaginationType.OFFSET, offsetParam);
+        pagination.limitParam = limitParam;
+        pagination.limit = limit;
+        return pagination;
+    }
+
+    /**
+     * Pages designated by a cursor returned in the body of the previous page.
+     * @param cursorParam the name of the query parameter carrying the cursor, e.g. "cursor".
+     * @param cursorField the dotted path of the next cursor in the body, e.g. "meta.next_cursor".
+     * @return Pagination for chaining
+     */
+    public static Pagination cursor(String cursorParam, String cursorField) {
+        Pagination pagination = new Pagination(PaginationType.CURSOR, cursorParam);
+        pagination.cursorField = cursorField;
+        return pagination;
+    }
+
+    /**
+     * Pages designated by the Link header of the previous page.
+     * @return Pagination for chaining
+     */
+    public static Pagination link() {
+        return new Pagination(PaginationType.LINK, null);
+    }
+
+    /**
+     * Set the dotted path of the list of items in the body of a page, "items" by default.
+     * @param itemsField the path, e.g. "data" or "result.entries".
+     * @return Pagination for chaining
+     */
+    public Pagination items(String itemsField) {
+        this.itemsField = itemsField;
+        return this;
+    }
+
+    /**
+     * Set how many pages are fetched ahead of the one being consumed, 1 by default.
+     * @param prefetch the number of pages, 0 to fetch a page only once the previous one is consumed.
+     * @return Pagination for chaining
+     */
+    public Pagination prefetch(int prefetch) {
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must not be negative");
+        }
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of pages to fetch.
+     * @param maxPages the number of pages.
+     * @return Pagination for chaining
+     */
+    public Pagination maxPages(long maxPages) {
+        this.maxPages = maxPages;
+        return this;
+    }
+
+    int getPrefetch() {
+        return prefetch;
+    }
+
+    long getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Get the route of the first page.
+     * @param route the rendered route.
+     * @return the route of the first page
+     */
+    String first(String route) {
+        return switch (type) {
+            case PAGE -> withQuery(route, param, String.valueOf(start));
+            case OFFSET -> withQuery(withQuery(route, param, "0"), limitParam, String.valueOf(limit));
+            case CURSOR, LINK -> route;
+        };
+    }
+
+    /**
+     * Get the route of the page following a received one.
+     * @param route the route of the received page.
+     * @param page the received page.
+     * @param items the items of the received page.
+     * @param baseUrl the base URL, stripped from absolute links.
+     * @return the route of the next page, or null if it was the last one.
+     */
+    String next(String route, ApiFactory page, List<?> items, String baseUrl) {
+        switch (type) {
+            case PAGE:
+                return items.isEmpty() ? null : withQuery(route, param, String.valueOf(Long.parseLong(queryValue(route, param)) + 1));
+            case OFFSET:
+                return items.size() < limit ? null : withQuery(route, param, String.valueOf(Long.parseLong(queryValue(route, param)) + items.size()));
+            case CURSOR:
+                Object cursor = select(page.getRawData(), cursorField);
+                return cursor == null || cursor.toString().isBlank() || items.isEmpty() ? null : withQuery(route, param, cursor.toString());
+            case LINK:
+                String next = nextLink(page.getHeader("Link"));
+                if (next == null) return null;
+                return baseUrl != null && next.startsWith(baseUrl) ? next.substring(baseUrl.length()) : next;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the items of a page.
+     * @param page the received page.
+     * @return the items, empty if the page has none.
+     */
+    List<?> itemsOf(ApiFactory page) {
+        return select(page.getRawData(), itemsField) instanceof List<?> items ? items : List.of();
+    }
+
+    /**
+     * Follows a dotted path in a parsed JSON body.
+     */
+    private static Object select(Map<String, Object> data, String path) {
+        Object current = data;
+        for (String part : path.split("\\.")) {
+            if (!(current instanceof Map<?, ?> map)) return null;
+            current = map.get(part);
+        }
+        return current;
+    }
+
+    /**
+     * Finds the URL with rel="next" in a Link header.
+     */
+    private static String nextLink(String header) {
+        if (header == null) return null;
+        Matcher matcher = LINK_PATTERN.matcher(header);
+        while (matcher.find()) {
+            Matcher rel = REL_PATTERN.matcher(matcher.group(2));
+            if (rel.find() && List.of(rel.group(1).trim().split("\\s+")).contains("next")) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets a query parameter of a route, replacing its current value if it has one.
+     */
+    static String withQuery(String route, String name, String value) {
+        String encoded = name + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8);
+        Matcher matcher = Pattern.compile("([?&])" + Pattern.quote(name) + "=[^&#]*").matcher(route);
+        if (matcher.find()) {
+            return route.substring(0, matcher.start()) + matcher.group(1) + encoded + route.substring(matcher.end());
+        }
+        return route + (route.contains("?") ? "&" : "?") + encoded;
+    }
+
+    private static String queryValue(String route, String name) {
+        Matcher matcher = Pattern.compile("[?&]" + Pattern.quote(name) + "=([^&#]*)").matcher(route);
+        return matcher.find() ? matcher.group(1) : "0";
+    }
+}
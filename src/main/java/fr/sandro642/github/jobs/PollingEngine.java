@@ -0,0 +1,201 @@
+package fr.sandro642.github.jobs;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * PollingEngine runs the polls started with JobGetInfos.poll().
+ * Every subscriber of the same rendered route and interval shares one schedule: the route is requested once per
+ * interval whatever the number of subscribers, and the schedule stops when the last subscriber leaves.
+ * Requests are conditional (If-None-Match, If-Modified-Since) and a response is only emitted when its content
+ * differs from the previous one; a late subscriber immediately receives the latest content.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class PollingEngine {
+
+    /**
+     * Singleton instance of PollingEngine.
+     */
+    private static final PollingEngine INSTANCE = new PollingEngine();
+
+    /**
+     * Get the singleton instance of PollingEngine.
+     * @return the singleton instance
+     */
+    public static PollingEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Running polls by key.
+     */
+    private final Map<String, Poll> polls = new ConcurrentHashMap<>();
+
+    /**
+     * Counters for the dashboard.
+     */
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder changed = new LongAdder();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private PollingEngine() {}
+
+    /**
+     * Subscribe to the poll of a key, starting it if nobody polls it yet.
+     * @param key the identity of the poll: rendered route, method, body and interval.
+     * @param interval the delay between two requests.
+     * @param fetch makes one request with the given conditional headers; an empty Mono means not modified.
+     * @return a Flux emitting the content each time it changes.
+     */
+    public Flux<ApiFactory> poll(String key, Duration interval, Function<Map<String, String>, Mono<ApiFactory>> fetch) {
+        return Flux.defer(() -> {
+            // Subscribers are counted under the lock of the key, so a poll is removed only when nobody joined it meanwhile.
+            Poll poll = polls.compute(key, (k, running) -> {
+                Poll joined = running != null ? running : new Poll(newPoll(k, interval, fetch));
+                joined.subscribers++;
+                return joined;
+            });
+            return poll.flux.doFinally(signal -> polls.computeIfPresent(key, (k, running) -> running != poll || --running.subscribers > 0 ? running : null));
+        });
+    }
+
+    /**
+     * Get a snapshot of the engine for the dashboard.
+     * @return a map with the number of running polls and the counters
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", polls.size());
+        result.put("requests", requests.sum());
+        result.put("notModified", notModified.sum());
+        result.put("unchanged", unchanged.sum());
+        result.put("changed", changed.sum());
+        return result;
+    }
+
+    private Flux<ApiFactory> newPoll(String key, Duration interval, Function<Map<String, String>, Mono<ApiFactory>> fetch) {
+        return Flux.defer(() -> {
+            PollState state = new PollState();
+
+            // Ticks are dropped while a request is still running, so a slow upstream never piles up requests.
+            return Flux.interval(Duration.ZERO, interval)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> {
+                        requests.increment();
+                        return fetch.apply(state.conditionalHeaders())
+                                .onErrorResume(error -> {
+                                    connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.JOBS_PACKAGE, "poll.error", Map.of("key", key, "exception", String.valueOf(error.getMessage()))));
+                                    return Mono.empty();
+                                })
+                                .switchIfEmpty(Mono.fromRunnable(notModified::increment));
+                    }, 1)
+                    .filter(state::hasChanged);
+        }).replay(1).refCount();
+    }
+
+    /**
+     * A running poll and the number of its subscribers.
+     */
+    private static final class Poll {
+
+        private final Flux<ApiFactory> flux;
+        private int subscribers;
+
+        private Poll(Flux<ApiFactory> flux) {
+            this.flux = flux;
+        }
+    }
+
+    /**
+     * Validators and content hash of the last response of a poll.
+     */
+    private final class PollState {
+
+        private String etag;
+        private String lastModified;
+        private long hash;
+        private boolean seen;
+
+        private Map<String, String> conditionalHeaders() {
+            Map<String, String> headers = new HashMap<>();
+            if (etag != null) headers.put("If-None-Match", etag);
+            if (lastModified != null) headers.put("If-Modified-Since", lastModified);
+            return headers;
+        }
+
+        /**
+         * Records the validators of a response and checks if its content differs from the previous one.
+         * Only successful responses are emitted.
+         */
+        private boolean hasChanged(ApiFactory response) {
+            if ((response.getRawJson() == null && response.getRawBody() == null) || response.getStatusCode() == 304) {
+                notModified.increment();
+                return false;
+            }
+            if (response.getStatusCode() < 200 || response.getStatusCode() >= 300) {
+                return false;
+            }
+
+            etag = response.getHeader("ETag");
+            lastModified = response.getHeader("Last-Modified");
+
+            long contentHash = response.getRawJson() != null ? fnv1a(response.getRawJson()) : fnv1a(response.getRawBody());
+            if (seen && contentHash == hash) {
+                unchanged.increment();
+                return false;
+            }
+
+            seen = true;
+            hash = contentHash;
+            changed.increment();
+            return true;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a string.
+     */
+    private static long fnv1a(String content) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < content.length(); i++) {
+            hash ^= content.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a binary body.
+     */
+    private static long fnv1a(byte[] content) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : content) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
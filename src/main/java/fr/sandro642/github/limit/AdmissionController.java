@@ -0,0 +1,389 @@
+package fr.sandro642.github.limit;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.PriorityType;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdmissionController decides when an outbound request may start.
+ * It keeps an adaptive limit of requests in flight: the limit grows slowly while responses are fast and successful,
+ * and shrinks as soon as errors, 429 or a latency increase show the upstream is saturated.
+ * Requests above the limit wait in one queue per priority class and are admitted from the most important class first.
+ * When the queue is deep, LOW and BACKGROUND requests are shed on arrival, and when it is full the least important
+ * queued request is shed to make room for a more important one.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class AdmissionController {
+
+    /**
+     * Shared instance used by every request that is not isolated elsewhere.
+     */
+    private static final AdmissionController INSTANCE = new AdmissionController("default");
+
+    /**
+     * Get the shared instance of AdmissionController.
+     * @return the shared instance
+     */
+    public static AdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Name of the controller, shown in logs and on the dashboard.
+     */
+    private final String name;
+
+    /**
+     * One FIFO queue per priority class, indexed by ordinal.
+     */
+    private final List<ArrayDeque<Waiter>> queues;
+
+    /**
+     * Counters per priority class, indexed by ordinal.
+     */
+    private final LongAdder[] admitted;
+    private final LongAdder[] queued;
+    private final LongAdder[] shed;
+
+    /**
+     * Current adaptive limit and its bounds.
+     */
+    private double limit = 64;
+    private int minLimit = 4;
+    private int maxLimit = 512;
+
+    /**
+     * Number of admitted requests not yet released, and number of queued requests.
+     */
+    private int inFlight;
+    private int queueSize;
+
+    /**
+     * Queue size above which LOW and BACKGROUND requests are shed on arrival, and hard queue capacity.
+     */
+    private int shedThreshold = 256;
+    private int maxQueueSize = 1024;
+
+    /**
+     * Lowest latency observed, slowly drifting upwards so it follows a permanent change of the upstream.
+     * A latency above minLatency * latencyTolerance is treated as a sign of saturation.
+     */
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private double latencyTolerance = 2.0;
+
+    /**
+     * Constructor of AdmissionController.
+     * @param name the name of the controller.
+     */
+    public AdmissionController(String name) {
+        this.name = name;
+        int classes = PriorityType.values().length;
+        this.queues = new ArrayList<>(classes);
+        this.admitted = new LongAdder[classes];
+        this.queued = new LongAdder[classes];
+        this.shed = new LongAdder[classes];
+        for (int i = 0; i < classes; i++) {
+            queues.add(new ArrayDeque<>());
+            admitted[i] = new LongAdder();
+            queued[i] = new LongAdder();
+            shed[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Set the bounds of the adaptive limit.
+     * @param initial the limit to start from.
+     * @param min the lowest limit the controller may shrink to.
+     * @param max the highest limit the controller may grow to.
+     * @return AdmissionController for chaining
+     */
+    public synchronized AdmissionController setLimits(int initial, int min, int max) {
+        if (min < 1 || max < min || initial < min || initial > max) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.limit = initial;
+        this.minLimit = min;
+        this.maxLimit = max;
+        return this;
+    }
+
+    /**
+     * Set the queue sizes.
+     * @param shedThreshold queue size above which LOW and BACKGROUND requests are shed on arrival.
+     * @param maxQueueSize hard capacity of the queue.
+     * @return AdmissionController for chaining
+     */
+    public synchronized AdmissionController setQueue(int shedThreshold, int maxQueueSize) {
+        if (shedThreshold < 0 || maxQueueSize < shedThreshold) {
+            throw new IllegalArgumentException("queue sizes must satisfy 0 <= shedThreshold <= maxQueueSize");
+        }
+        this.shedThreshold = shedThreshold;
+        this.maxQueueSize = maxQueueSize;
+        return this;
+    }
+
+    /**
+     * Set how much slower than the fastest observed response a response may be before the limit shrinks.
+     * @param latencyTolerance the tolerated ratio, 2.0 by default.
+     * @return AdmissionController for chaining
+     */
+    public synchronized AdmissionController setLatencyTolerance(double latencyTolerance) {
+        if (latencyTolerance < 1.0) {
+            throw new IllegalArgumentException("latencyTolerance must be >= 1.0");
+        }
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    /**
+     * Ask for the right to start a request.
+     * The returned Mono emits a Permit once the request is admitted, or fails with a RequestRejectedException if it is shed.
+     * Cancelling it while queued removes the request from the queue.
+     * The Permit must be released once the request is over.
+     * @param priority the priority class of the request.
+     * @return a Mono emitting the Permit.
+     */
+    public Mono<Permit> acquire(PriorityType priority) {
+        PriorityType p = priority == null ? PriorityType.NORMAL : priority;
+
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(p, sink);
+            sink.onCancel(() -> cancel(waiter));
+
+            Permit permit = null;
+            Waiter evicted = null;
+            String rejected = null;
+
+            synchronized (this) {
+                if (queueSize == 0 && inFlight < (int) limit) {
+                    inFlight++;
+                    permit = new Permit(p);
+                    waiter.permit = permit;
+                } else if (p.ordinal() > PriorityType.NORMAL.ordinal() && queueSize >= shedThreshold) {
+                    rejected = "queue is deep (" + queueSize + " waiting)";
+                } else if (queueSize >= maxQueueSize) {
+                    evicted = pollLessImportantThan(p);
+                    if (evicted == null) {
+                        rejected = "queue is full (" + queueSize + " waiting)";
+                    } else {
+                        enqueue(waiter);
+                    }
+                } else {
+                    enqueue(waiter);
+                }
+            }
+
+            if (evicted != null) {
+                reject(evicted, "evicted by a " + p + " request");
+            }
+
+            if (permit != null) {
+                admitted[p.ordinal()].increment();
+                sink.success(permit);
+            } else if (rejected != null) {
+                reject(waiter, rejected);
+            } else {
+                queued[p.ordinal()].increment();
+            }
+        });
+    }
+
+    /**
+     * Get a snapshot of the controller for the dashboard.
+     * @return a map describing the limit, the load and the counters per priority class.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, Object> priorities = new LinkedHashMap<>();
+
+        synchronized (this) {
+            result.put("name", name);
+            result.put("limit", (int) limit);
+            result.put("inFlight", inFlight);
+            result.put("queued", queueSize);
+        }
+
+        for (PriorityType p : PriorityType.values()) {
+            Map<String, Object> counters = new LinkedHashMap<>();
+            counters.put("admitted", admitted[p.ordinal()].sum());
+            counters.put("queued", queued[p.ordinal()].sum());
+            counters.put("shed", shed[p.ordinal()].sum());
+            priorities.put(p.name(), counters);
+        }
+        result.put("priorities", priorities);
+        return result;
+    }
+
+    /**
+     * Get the name of the controller.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Called when a permit is released: adapts the limit, then admits as many queued requests as the limit allows.
+     * @param permit the released permit.
+     * @param success false if the request failed in a way that shows the upstream is saturated.
+     * @param adapt false if the outcome should not influence the limit (cancellation).
+     */
+    private void release(Permit permit, boolean success, boolean adapt) {
+        List<Waiter> toAdmit = new ArrayList<>();
+
+        synchronized (this) {
+            inFlight--;
+
+            if (adapt) {
+                long latency = System.nanoTime() - permit.admittedAt;
+
+                if (success) {
+                    minLatencyNanos = Math.min(latency, minLatencyNanos == Long.MAX_VALUE ? latency : minLatencyNanos + (minLatencyNanos >> 8));
+                }
+
+                if (!success || latency > minLatencyNanos * latencyTolerance) {
+                    limit = Math.max(minLimit, limit * 0.9);
+                } else if (inFlight + 1 >= limit / 2) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+
+            while (queueSize > 0 && inFlight < (int) limit) {
+                Waiter next = pollMostImportant();
+                inFlight++;
+                next.permit = new Permit(next.priority);
+                toAdmit.add(next);
+            }
+        }
+
+        for (Waiter waiter : toAdmit) {
+            admitted[waiter.priority.ordinal()].increment();
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    /**
+     * Called when the subscriber of acquire() cancels.
+     * @param waiter the cancelled waiter.
+     */
+    private void cancel(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = queues.get(waiter.priority.ordinal()).remove(waiter);
+            if (removed) queueSize--;
+        }
+        if (!removed && waiter.permit != null) {
+            waiter.permit.release(true, false);
+        }
+    }
+
+    private void enqueue(Waiter waiter) {
+        queues.get(waiter.priority.ordinal()).addLast(waiter);
+        queueSize++;
+    }
+
+    private Waiter pollMostImportant() {
+        for (ArrayDeque<Waiter> queue : queues) {
+            Waiter waiter = queue.pollFirst();
+            if (waiter != null) {
+                queueSize--;
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private Waiter pollLessImportantThan(PriorityType priority) {
+        for (int i = queues.size() - 1; i > priority.ordinal(); i--) {
+            Waiter waiter = queues.get(i).pollLast();
+            if (waiter != null) {
+                queueSize--;
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private void reject(Waiter waiter, String reason) {
+        shed[waiter.priority.ordinal()].increment();
+        connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "admission.shed", Map.of("name", name, "priority", waiter.priority.name(), "reason", reason)));
+        waiter.sink.error(new RequestRejectedException("Request with priority " + waiter.priority + " shed by " + name + ": " + reason));
+    }
+
+    /**
+     * A request waiting to be admitted.
+     */
+    private static final class Waiter {
+
+        private final PriorityType priority;
+        private final MonoSink<Permit> sink;
+        private volatile Permit permit;
+
+        private Waiter(PriorityType priority, MonoSink<Permit> sink) {
+            this.priority = priority;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Permit is the right for one admitted request to be in flight.
+     * Releasing it more than once has no effect.
+     */
+    public final class Permit {
+
+        private final PriorityType priority;
+        private final long admittedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(PriorityType priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * Release the permit once the request is over.
+         * @param success false if the request failed because the upstream is saturated (error, timeout, 5xx, 429).
+         */
+        public void release(boolean success) {
+            release(success, true);
+        }
+
+        /**
+         * Release the permit without letting the outcome change the limit, e.g. when the caller cancelled.
+         */
+        public void discard() {
+            release(true, false);
+        }
+
+        private void release(boolean success, boolean adapt) {
+            if (released.compareAndSet(false, true)) {
+                AdmissionController.this.release(this, success, adapt);
+            }
+        }
+
+        /**
+         * Get the priority class of the admitted request.
+         * @return the priority
+         */
+        public PriorityType getPriority() {
+            return priority;
+        }
+    }
+}
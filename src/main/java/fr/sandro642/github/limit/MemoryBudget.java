@@ -0,0 +1,373 @@
+package fr.sandro642.github.limit;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MemoryBudget bounds the number of bytes held in memory by requests in flight:
+ * request bodies being serialized and sent, and response bodies being buffered.
+ * Each request holds a Lease that grows when the response arrives; a request that does not fit waits
+ * until enough bytes are released, and is rejected with a RequestRejectedException after maxWait.
+ * It is configured with the `memoryBudget` section of infos.yml:
+ *
+ * <pre>
+ * memoryBudget:
+ *   maxBytes: 67108864
+ *   maxWait: 30
+ *   defaultResponseBytes: 65536
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class MemoryBudget {
+
+    /**
+     * Singleton instance of MemoryBudget.
+     */
+    private static final MemoryBudget INSTANCE = new MemoryBudget();
+
+    /**
+     * Get the singleton instance of MemoryBudget.
+     * @return the singleton instance
+     */
+    public static MemoryBudget getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Budget in bytes, longest wait for bytes (zero to reject immediately), and number of bytes reserved for a
+     * response whose size is not announced by a Content-Length header.
+     */
+    private volatile long maxBytes = 64L * 1024 * 1024;
+    private volatile Duration maxWait = Duration.ofSeconds(30);
+    private volatile long defaultResponseBytes = 64L * 1024;
+
+    /**
+     * Bytes currently held, highest value seen, number of leases holding bytes and waiting requests.
+     */
+    private long usedBytes;
+    private long peakBytes;
+    private int activeLeases;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    /**
+     * Counters for the dashboard.
+     */
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private MemoryBudget() {}
+
+    /**
+     * Load the budget from the `memoryBudget` section of infos.yml.
+     * @param yamlMemoryBudget the `memoryBudget` section, can be null to keep the defaults.
+     */
+    public void load(Map<String, Object> yamlMemoryBudget) {
+        if (yamlMemoryBudget == null) {
+            return;
+        }
+
+        try {
+            long max = yamlMemoryBudget.get("maxBytes") instanceof Number n ? n.longValue() : maxBytes;
+            Duration wait = yamlMemoryBudget.get("maxWait") instanceof Number n ? Duration.ofMillis((long) (n.doubleValue() * 1000)) : maxWait;
+            long response = yamlMemoryBudget.get("defaultResponseBytes") instanceof Number n ? n.longValue() : defaultResponseBytes;
+            configure(max, wait, response);
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "memory.error", "exception", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Configure the budget.
+     * @param maxBytes the number of bytes requests in flight may hold together.
+     * @param maxWait the longest a request waits for bytes before being rejected, zero to reject immediately.
+     * @param defaultResponseBytes the bytes reserved for a response without Content-Length.
+     * @return MemoryBudget for chaining
+     */
+    public MemoryBudget configure(long maxBytes, Duration maxWait, long defaultResponseBytes) {
+        if (maxBytes < 1 || maxWait == null || maxWait.isNegative() || defaultResponseBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be positive, maxWait and defaultResponseBytes must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.maxWait = maxWait;
+        this.defaultResponseBytes = defaultResponseBytes;
+        drain();
+        return this;
+    }
+
+    /**
+     * Get the number of bytes reserved for a response whose size is not known in advance.
+     * @return the number of bytes
+     */
+    public long getDefaultResponseBytes() {
+        return defaultResponseBytes;
+    }
+
+    /**
+     * Reserve bytes for a new request.
+     * The returned Mono emits the Lease once the bytes are available, or fails with a RequestRejectedException.
+     * The Lease must be released once the request is over.
+     * @param bytes the number of bytes of the request body.
+     * @return a Mono emitting the Lease.
+     */
+    public Mono<Lease> reserve(long bytes) {
+        return Mono.defer(() -> {
+            Lease lease = new Lease();
+            return acquire(lease, Math.max(0, bytes), false).thenReturn(lease);
+        });
+    }
+
+    /**
+     * Get a snapshot of the budget for the dashboard.
+     * @return a map describing the budget and its usage
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        synchronized (this) {
+            result.put("maxBytes", maxBytes);
+            result.put("usedBytes", usedBytes);
+            result.put("peakBytes", peakBytes);
+            result.put("activeLeases", activeLeases);
+            result.put("waiting", waiters.size());
+        }
+        result.put("granted", granted.sum());
+        result.put("waited", waited.sum());
+        result.put("rejected", rejected.sum());
+        return result;
+    }
+
+    /**
+     * Takes bytes for a lease, waiting if they are not available.
+     * @param lease the lease the bytes are added to.
+     * @param bytes the number of bytes.
+     * @param growing true if the lease already holds bytes; it then goes ahead of new requests.
+     * @return a Mono completing once the bytes are held.
+     */
+    private Mono<Void> acquire(Lease lease, long bytes, boolean growing) {
+        Mono<Void> acquire = Mono.create(sink -> {
+            Waiter waiter = new Waiter(lease, bytes, growing, sink);
+            sink.onCancel(() -> cancel(waiter));
+            boolean grant;
+
+            synchronized (this) {
+                grant = waiters.isEmpty() && fits(bytes);
+                if (grant) {
+                    take(waiter);
+                } else if (maxWait.isZero()) {
+                    waiter.rejected = true;
+                } else if (growing) {
+                    waiters.addFirst(waiter);
+                    if (everyLeaseIsGrowing()) {
+                        // Every lease is waiting for more bytes: let the first one overshoot so they cannot deadlock.
+                        waiters.pollFirst();
+                        take(waiter);
+                        grant = true;
+                    }
+                } else {
+                    waiters.addLast(waiter);
+                }
+            }
+
+            if (grant) {
+                granted.increment();
+                sink.success();
+            } else if (waiter.rejected) {
+                reject(sink, bytes);
+            } else {
+                waited.increment();
+            }
+        });
+
+        return maxWait.isZero() ? acquire : acquire.timeout(maxWait)
+                .onErrorMap(TimeoutException.class, e -> {
+                    rejected.increment();
+                    connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "memory.rejected", Map.of("bytes", String.valueOf(bytes), "used", String.valueOf(usedBytes()), "max", String.valueOf(maxBytes))));
+                    return new RequestRejectedException("Memory budget of " + maxBytes + " bytes exhausted, waited " + maxWait.toMillis() + " ms for " + bytes + " bytes");
+                });
+    }
+
+    /**
+     * Checks if the bytes fit in the budget. A request larger than the whole budget is let through alone.
+     * Must be called while holding the lock.
+     */
+    private boolean fits(long bytes) {
+        return usedBytes + bytes <= maxBytes || usedBytes == 0;
+    }
+
+    /**
+     * Checks if every lease holding bytes is waiting to grow. Must be called while holding the lock.
+     */
+    private boolean everyLeaseIsGrowing() {
+        int growing = 0;
+        for (Waiter waiter : waiters) {
+            if (waiter.growing) growing++;
+        }
+        return growing >= activeLeases;
+    }
+
+    /**
+     * Gives the bytes to a waiter. Must be called while holding the lock.
+     */
+    private void take(Waiter waiter) {
+        if (waiter.lease.bytes == 0 && !waiter.lease.active) {
+            waiter.lease.active = true;
+            activeLeases++;
+        }
+        waiter.lease.bytes += waiter.bytes;
+        usedBytes += waiter.bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+    }
+
+    private synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Changes the bytes held by a lease without waiting, e.g. once the real size of a response is known.
+     */
+    private void adjust(Lease lease, long bytes) {
+        synchronized (this) {
+            if (!lease.active) return;
+            usedBytes += bytes - lease.bytes;
+            lease.bytes = bytes;
+            peakBytes = Math.max(peakBytes, usedBytes);
+        }
+        drain();
+    }
+
+    private void release(Lease lease) {
+        synchronized (this) {
+            if (!lease.active) return;
+            usedBytes -= lease.bytes;
+            lease.bytes = 0;
+            lease.active = false;
+            activeLeases--;
+        }
+        drain();
+    }
+
+    /**
+     * Called when the subscriber cancels. A new lease granted but never delivered is released here.
+     */
+    private void cancel(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = waiters.remove(waiter);
+        }
+        if (!removed && !waiter.growing) {
+            waiter.lease.release();
+        }
+        drain();
+    }
+
+    /**
+     * Grants the waiting requests, in order, as long as their bytes fit.
+     */
+    private void drain() {
+        List<Waiter> toGrant = new ArrayList<>();
+
+        synchronized (this) {
+            while (!waiters.isEmpty() && fits(waiters.peekFirst().bytes)) {
+                Waiter waiter = waiters.pollFirst();
+                take(waiter);
+                toGrant.add(waiter);
+            }
+            if (!waiters.isEmpty() && waiters.peekFirst().growing && everyLeaseIsGrowing()) {
+                Waiter waiter = waiters.pollFirst();
+                take(waiter);
+                toGrant.add(waiter);
+            }
+        }
+
+        for (Waiter waiter : toGrant) {
+            granted.increment();
+            waiter.sink.success();
+        }
+    }
+
+    private void reject(MonoSink<Void> sink, long bytes) {
+        rejected.increment();
+        connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "memory.rejected", Map.of("bytes", String.valueOf(bytes), "used", String.valueOf(usedBytes()), "max", String.valueOf(maxBytes))));
+        sink.error(new RequestRejectedException("Memory budget of " + maxBytes + " bytes exhausted, " + bytes + " bytes requested"));
+    }
+
+    /**
+     * A request waiting for bytes.
+     */
+    private static final class Waiter {
+
+        private final Lease lease;
+        private final long bytes;
+        private final boolean growing;
+        private final MonoSink<Void> sink;
+        private boolean rejected;
+
+        private Waiter(Lease lease, long bytes, boolean growing, MonoSink<Void> sink) {
+            this.lease = lease;
+            this.bytes = bytes;
+            this.growing = growing;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Lease is the bytes held by one request. Releasing it more than once has no effect.
+     */
+    public final class Lease {
+
+        private long bytes;
+        private boolean active;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease() {}
+
+        /**
+         * Take more bytes, e.g. for the response once its headers are received, waiting if they are not available.
+         * @param bytes the number of bytes to add.
+         * @return a Mono completing once the bytes are held.
+         */
+        public Mono<Void> grow(long bytes) {
+            return Mono.defer(() -> released.get() ? Mono.empty() : acquire(this, Math.max(0, bytes), true));
+        }
+
+        /**
+         * Set the number of bytes really held, without waiting.
+         * @param bytes the number of bytes.
+         */
+        public void adjust(long bytes) {
+            if (!released.get()) MemoryBudget.this.adjust(this, Math.max(0, bytes));
+        }
+
+        /**
+         * Give the bytes back once the request is over.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                MemoryBudget.this.release(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package fr.sandro642.github.limit;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.RateLimitType;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimiterManager keeps the client-side token buckets declared in the `rateLimits` section of infos.yml,
+ * one per route and one per base URL:
+ *
+ * <pre>
+ * rateLimits:
+ *   baseUrls:
+ *     "http://localhost:8080/api": { rate: 50, burst: 100 }
+ *   routes:
+ *     info: { rate: 5, burst: 10 }
+ * </pre>
+ *
+ * A request needs a token from both its route bucket and its base URL bucket, when they exist.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class RateLimiterManager {
+
+    /**
+     * Singleton instance of RateLimiterManager.
+     */
+    private static final RateLimiterManager INSTANCE = new RateLimiterManager();
+
+    /**
+     * Get the singleton instance of RateLimiterManager.
+     * @return the singleton instance
+     */
+    public static RateLimiterManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Buckets by route name and by base URL, replaced as a whole on load.
+     */
+    private volatile Map<String, TokenBucket> routeBuckets = Map.of();
+    private volatile Map<String, TokenBucket> baseUrlBuckets = Map.of();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private RateLimiterManager() {}
+
+    /**
+     * Load the buckets from the `rateLimits` section of infos.yml, replacing the previous ones.
+     * @param yamlRateLimits the `rateLimits` section, can be null.
+     */
+    public synchronized void load(Map<String, Object> yamlRateLimits) {
+        Map<String, TokenBucket> routes = new HashMap<>();
+        Map<String, TokenBucket> baseUrls = new HashMap<>();
+
+        if (yamlRateLimits != null) {
+            readBuckets(yamlRateLimits.get("routes"), routes, true);
+            readBuckets(yamlRateLimits.get("baseUrls"), baseUrls, false);
+        }
+
+        routeBuckets = routes;
+        baseUrlBuckets = baseUrls;
+    }
+
+    /**
+     * Take a token for a request from its route bucket and its base URL bucket.
+     * @param routeName the name of the route.
+     * @param baseUrl the base URL the request is sent to.
+     * @param rateLimitType what to do when no token is available.
+     * @param maxDelay the longest to wait for a token with RateLimitType.WAIT.
+     * @return a Mono completing when the request may be sent, or failing with a RequestRejectedException.
+     * Cancelling it while it waits gives the tokens back.
+     */
+    public Mono<Void> acquire(String routeName, String baseUrl, RateLimitType rateLimitType, Duration maxDelay) {
+        TokenBucket route = routeName == null ? null : routeBuckets.get(routeName.toLowerCase());
+        TokenBucket base = baseUrl == null ? null : baseUrlBuckets.get(normalize(baseUrl));
+
+        if (route == null && base == null) {
+            return Mono.empty();
+        }
+
+        return Mono.defer(() -> {
+            long maxWait = rateLimitType == RateLimitType.FAIL_FAST ? 0L : maxDelay.toNanos();
+
+            long routeWait = route == null ? 0L : route.reserve(maxWait);
+            if (routeWait < 0) {
+                return reject(route);
+            }
+
+            long baseWait = base == null ? 0L : base.reserve(maxWait);
+            if (baseWait < 0) {
+                if (route != null) route.refund();
+                return reject(base);
+            }
+
+            long wait = Math.max(routeWait, baseWait);
+            if (wait == 0) {
+                return Mono.empty();
+            }
+            // The tokens are taken before the wait: a caller giving up while waiting hands them back to the next requests.
+            return Mono.delay(Duration.ofNanos(wait))
+                    .doOnCancel(() -> {
+                        if (route != null) route.refund();
+                        if (base != null) base.refund();
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * Report the outcome of a request so a 429 shrinks the effective rate and successes restore it.
+     * @param routeName the name of the route.
+     * @param baseUrl the base URL the request was sent to.
+     * @param statusCode the HTTP status code of the response.
+     * @param retryAfter the value of the Retry-After header, can be null.
+     */
+    public void onResponse(String routeName, String baseUrl, int statusCode, String retryAfter) {
+        TokenBucket route = routeName == null ? null : routeBuckets.get(routeName.toLowerCase());
+        TokenBucket base = baseUrl == null ? null : baseUrlBuckets.get(normalize(baseUrl));
+
+        if (route == null && base == null) {
+            return;
+        }
+
+        if (statusCode == 429) {
+            long retryAfterNanos = parseRetryAfter(retryAfter);
+            if (route != null) route.throttle(retryAfterNanos);
+            if (base != null) base.throttle(retryAfterNanos);
+            connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "ratelimit.throttled", Map.of("route", String.valueOf(routeName), "retryafter", String.valueOf(retryAfter))));
+        } else if (statusCode >= 200 && statusCode < 300) {
+            if (route != null) route.recover();
+            if (base != null) base.recover();
+        }
+    }
+
+    /**
+     * Get a snapshot of every bucket for the dashboard.
+     * @return a map of the route and base URL buckets
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> routes = new LinkedHashMap<>();
+        routeBuckets.forEach((name, bucket) -> routes.put(name, bucket.snapshot()));
+
+        Map<String, Object> baseUrls = new LinkedHashMap<>();
+        baseUrlBuckets.forEach((name, bucket) -> baseUrls.put(name, bucket.snapshot()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("routes", routes);
+        result.put("baseUrls", baseUrls);
+        return result;
+    }
+
+    private Mono<Void> reject(TokenBucket bucket) {
+        connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "ratelimit.rejected", Map.of("bucket", bucket.getName())));
+        return Mono.error(new RequestRejectedException("Rate limit of " + bucket.getName() + " reached"));
+    }
+
+    private void readBuckets(Object section, Map<String, TokenBucket> target, boolean lowercase) {
+        if (!(section instanceof Map<?, ?> entries)) {
+            return;
+        }
+
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            String name = lowercase ? entry.getKey().toString().toLowerCase() : normalize(entry.getKey().toString());
+            try {
+                Map<?, ?> config = (Map<?, ?>) entry.getValue();
+                double rate = ((Number) config.get("rate")).doubleValue();
+                Object burst = config.get("burst");
+                target.put(name, new TokenBucket(name, rate, burst instanceof Number number ? number.intValue() : (int) Math.max(1, Math.ceil(rate))));
+            } catch (Exception e) {
+                connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "ratelimit.error", Map.of("bucket", name, "exception", String.valueOf(e.getMessage()))));
+            }
+        }
+    }
+
+    private String normalize(String baseUrl) {
+        return baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Parses a Retry-After header, given either in seconds or as an HTTP date.
+     * @param retryAfter the header value, can be null.
+     * @return the delay in nanoseconds, 0 if absent or invalid.
+     */
+    private long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0L;
+        }
+        try {
+            return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0L, Duration.between(ZonedDateTime.now(), date).toNanos());
+        } catch (Exception ignored) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package fr.sandro642.github.limit;
+
+/**
+ * RequestRejectedException is thrown when a request is refused on the client side
+ * because of a limit (load shedding, rate limiting, memory budget...), before anything is sent.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class RequestRejectedException extends RuntimeException {
+
+    /**
+     * Serial version of the exception.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor of RequestRejectedException.
+     * @param message the reason of the rejection.
+     */
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,135 @@
+package fr.sandro642.github.limit;
+
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RouteGroup is a bulkhead declared in the `groups` section of infos.yml.
+ * The routes of a group get their own connection pool and their own admission queue,
+ * so a burst or a slow upstream on one group never uses up the resources of another.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class RouteGroup {
+
+    /**
+     * Name of the group.
+     */
+    private final String name;
+
+    /**
+     * Names of the routes belonging to the group, in lowercase like in infos.yml.
+     */
+    private final Set<String> routes;
+
+    /**
+     * Maximum number of connections of the group's pool.
+     */
+    private final int maxConnections;
+
+    /**
+     * Maximum number of requests of the group in flight at the same time.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Maximum number of requests of the group waiting to start.
+     */
+    private final int queueSize;
+
+    /**
+     * Connection pool dedicated to the group.
+     */
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Admission queue dedicated to the group.
+     */
+    private final AdmissionController admissionController;
+
+    /**
+     * Constructor of RouteGroup.
+     * @param name the name of the group.
+     * @param routes the names of the routes belonging to the group.
+     * @param maxConnections the maximum number of connections of the group's pool.
+     * @param maxInFlight the maximum number of requests in flight.
+     * @param queueSize the maximum number of requests waiting to start.
+     */
+    public RouteGroup(String name, Set<String> routes, int maxConnections, int maxInFlight, int queueSize) {
+        this.name = name;
+        this.routes = Set.copyOf(routes);
+        this.maxConnections = maxConnections;
+        this.maxInFlight = maxInFlight;
+        this.queueSize = queueSize;
+
+        this.connectionProvider = ConnectionProvider.builder("connectlib-" + name)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(Math.max(1, queueSize))
+                .pendingAcquireTimeout(Duration.ofSeconds(45))
+                .build();
+
+        this.admissionController = new AdmissionController(name)
+                .setLimits(maxInFlight, 1, maxInFlight)
+                .setQueue(queueSize, queueSize);
+    }
+
+    /**
+     * Get the name of the group.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the names of the routes belonging to the group.
+     * @return the route names
+     */
+    public Set<String> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Get the connection pool dedicated to the group.
+     * @return the ConnectionProvider
+     */
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    /**
+     * Get the admission queue dedicated to the group.
+     * @return the AdmissionController
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Release the connections of the group's pool.
+     */
+    public void dispose() {
+        connectionProvider.disposeLater().subscribe();
+    }
+
+    /**
+     * Get a snapshot of the group for the dashboard.
+     * @return a map describing the group's configuration and its admission queue
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("routes", routes);
+        result.put("maxConnections", maxConnections);
+        result.put("maxInFlight", maxInFlight);
+        result.put("queueSize", queueSize);
+        result.put("admission", admissionController.snapshot());
+        return result;
+    }
+}
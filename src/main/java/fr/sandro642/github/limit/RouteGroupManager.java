@@ -0,0 +1,138 @@
+package fr.sandro642.github.limit;
+
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.enums.lang.CategoriesType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RouteGroupManager keeps the route groups (bulkheads) declared in infos.yml:
+ *
+ * <pre>
+ * groups:
+ *   reports:
+ *     routes: [export, report]
+ *     maxConnections: 10
+ *     maxInFlight: 20
+ *     queueSize: 50
+ * </pre>
+ *
+ * Routes that belong to no group share the default connection pool and the default AdmissionController.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class RouteGroupManager {
+
+    /**
+     * Singleton instance of RouteGroupManager.
+     */
+    private static final RouteGroupManager INSTANCE = new RouteGroupManager();
+
+    /**
+     * Get the singleton instance of RouteGroupManager.
+     * @return the singleton instance
+     */
+    public static RouteGroupManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * Groups by name, and the group of each route by route name.
+     * Both maps are replaced as a whole on load, so lookups never need a lock.
+     */
+    private volatile Map<String, RouteGroup> groups = Map.of();
+    private volatile Map<String, RouteGroup> groupsByRoute = Map.of();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private RouteGroupManager() {}
+
+    /**
+     * Load the groups from the `groups` section of infos.yml, replacing the previous ones.
+     * @param yamlGroups the `groups` section, can be null.
+     */
+    public synchronized void load(Map<String, Object> yamlGroups) {
+        Map<String, RouteGroup> newGroups = new HashMap<>();
+        Map<String, RouteGroup> newGroupsByRoute = new HashMap<>();
+
+        if (yamlGroups != null) {
+            for (Map.Entry<String, Object> entry : yamlGroups.entrySet()) {
+                try {
+                    Map<?, ?> config = (Map<?, ?>) entry.getValue();
+
+                    Set<String> routes = new HashSet<>();
+                    Object routeList = config.get("routes");
+                    if (routeList instanceof Collection<?> collection) {
+                        for (Object route : collection) {
+                            routes.add(route.toString().toLowerCase());
+                        }
+                    }
+
+                    int maxInFlight = intValue(config.get("maxInFlight"), 16);
+                    int maxConnections = intValue(config.get("maxConnections"), maxInFlight);
+                    int queueSize = intValue(config.get("queueSize"), 64);
+
+                    RouteGroup group = new RouteGroup(entry.getKey(), routes, maxConnections, maxInFlight, queueSize);
+                    newGroups.put(group.getName(), group);
+                    for (String route : routes) {
+                        newGroupsByRoute.put(route, group);
+                    }
+                } catch (Exception e) {
+                    connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.LIMIT_PACKAGE, "group.error", Map.of("group", entry.getKey(), "exception", String.valueOf(e.getMessage()))));
+                }
+            }
+        }
+
+        Map<String, RouteGroup> previous = groups;
+        groups = newGroups;
+        groupsByRoute = newGroupsByRoute;
+        previous.values().forEach(RouteGroup::dispose);
+    }
+
+    /**
+     * Get the group a route belongs to.
+     * @param routeName the name of the route, as in infos.yml.
+     * @return the RouteGroup, or null if the route belongs to no group.
+     */
+    public RouteGroup groupOf(String routeName) {
+        return routeName == null ? null : groupsByRoute.get(routeName.toLowerCase());
+    }
+
+    /**
+     * Get all the groups.
+     * @return the groups
+     */
+    public Collection<RouteGroup> getGroups() {
+        return groups.values();
+    }
+
+    /**
+     * Get a snapshot of every group for the dashboard.
+     * @return a list of group descriptions
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (RouteGroup group : groups.values()) {
+            result.add(group.snapshot());
+        }
+        return result;
+    }
+
+    private int intValue(Object value, int defaultValue) {
+        return value instanceof Number number ? number.intValue() : defaultValue;
+    }
+}
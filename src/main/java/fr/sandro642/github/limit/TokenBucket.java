@@ -0,0 +1,156 @@
+package fr.sandro642.github.limit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TokenBucket is a lock-free token bucket, implemented as a generic cell rate algorithm:
+ * instead of counting tokens it keeps the theoretical arrival time of the next request in a single AtomicLong,
+ * so taking a token is one compare-and-set on the hot path.
+ * A 429 with Retry-After halves the effective rate and blocks the bucket until the upstream accepts requests again;
+ * every successful response then brings the effective rate back towards the configured one.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class TokenBucket {
+
+    /**
+     * Lowest effective rate, as a fraction of the configured rate.
+     */
+    private static final int MAX_SLOWDOWN = 32;
+
+    /**
+     * Name of the bucket, the route name or the base URL.
+     */
+    private final String name;
+
+    /**
+     * Configured rate (tokens per second) and burst (bucket capacity).
+     */
+    private final double rate;
+    private final int burst;
+
+    /**
+     * Time between two tokens at the configured rate, and at the current effective rate.
+     */
+    private final long baseIntervalNanos;
+    private volatile long intervalNanos;
+
+    /**
+     * Theoretical arrival time of the next request.
+     */
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+    /**
+     * Counters for the dashboard.
+     */
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Constructor of TokenBucket.
+     * @param name the name of the bucket.
+     * @param rate the number of tokens added per second.
+     * @param burst the capacity of the bucket, i.e. how many requests may be sent at once after a quiet period.
+     */
+    public TokenBucket(String name, double rate, int burst) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate must be > 0 and burst >= 1");
+        }
+        this.name = name;
+        this.rate = rate;
+        this.burst = burst;
+        this.baseIntervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.intervalNanos = baseIntervalNanos;
+    }
+
+    /**
+     * Try to take a token.
+     * @param maxWaitNanos the longest the caller accepts to wait for the token, 0 to fail fast.
+     * @return the time to wait before sending, in nanoseconds, or -1 if the token cannot be obtained within maxWaitNanos.
+     */
+    public long reserve(long maxWaitNanos) {
+        long interval = intervalNanos;
+        long tolerance = interval * burst;
+
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + interval;
+            long wait = Math.max(0L, next - tolerance - now);
+
+            if (wait > maxWaitNanos) {
+                rejected.increment();
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                granted.increment();
+                if (wait > 0) delayed.increment();
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Give back a token taken by reserve() that was not used.
+     */
+    public void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * Called on a 429: halves the effective rate and blocks the bucket until the upstream accepts requests again.
+     * @param retryAfterNanos the delay given by the Retry-After header, 0 if absent.
+     */
+    public void throttle(long retryAfterNanos) {
+        throttled.increment();
+        intervalNanos = Math.min(baseIntervalNanos * MAX_SLOWDOWN, intervalNanos * 2);
+
+        if (retryAfterNanos > 0) {
+            long interval = intervalNanos;
+            long blockedUntil = System.nanoTime() + retryAfterNanos + interval * (burst - 1);
+            theoreticalArrival.accumulateAndGet(blockedUntil, Math::max);
+        }
+    }
+
+    /**
+     * Called on a successful response: brings the effective rate a step back towards the configured rate.
+     */
+    public void recover() {
+        long interval = intervalNanos;
+        if (interval > baseIntervalNanos) {
+            intervalNanos = Math.max(baseIntervalNanos, interval - Math.max(1L, (interval - baseIntervalNanos) / 16));
+        }
+    }
+
+    /**
+     * Get the name of the bucket.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get a snapshot of the bucket for the dashboard.
+     * @return a map describing the configured and effective rates and the counters
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rate", rate);
+        result.put("effectiveRate", (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos);
+        result.put("burst", burst);
+        result.put("granted", granted.sum());
+        result.put("delayed", delayed.sum());
+        result.put("rejected", rejected.sum());
+        result.put("throttled", throttled.sum());
+        return result;
+    }
+}
@@ -0,0 +1,229 @@
+package fr.sandro642.github.metrics;
+
+import fr.sandro642.github.enums.MethodType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RouteMetrics counts the calls of each route: requests, responses and errors by status class,
+ * bytes sent and received, and a LatencyHistogram of their durations.
+ * Calls are grouped by the name of their route rather than by the path called, whose parameters are substituted,
+ * so the number of series stays bounded by the size of the route table.
+ * Counters are LongAdders, so recording a call from many threads costs a few uncontended increments.
+ * The metrics are exposed by the dashboard at `/api/metrics`, as JSON or in the Prometheus text format
+ * with `/api/metrics?format=prometheus`.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class RouteMetrics {
+
+    /**
+     * Singleton instance of RouteMetrics.
+     */
+    private static final RouteMetrics INSTANCE = new RouteMetrics();
+
+    /**
+     * Get the singleton instance of RouteMetrics.
+     * @return the singleton instance
+     */
+    public static RouteMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Percentiles reported for the latency of each route, with their names in JSON and as Prometheus quantiles.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    /**
+     * Status classes counted, the last one for the calls that failed without a response.
+     */
+    private static final String[] CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx", "network"};
+    private static final int NETWORK = CLASSES.length - 1;
+
+    /**
+     * Metrics of each route, by method and route.
+     */
+    private final Map<String, Stats> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private RouteMetrics() {}
+
+    /**
+     * Get the metrics of a route, created on its first call.
+     * @param methodType the HTTP method of the call.
+     * @param route the name of the route in the route table, or the path called for a call made without a route name.
+     * @return the Stats of the route
+     */
+    public Stats of(MethodType methodType, String route) {
+        return routes.computeIfAbsent(methodType.name() + " " + route, key -> new Stats(methodType, route));
+    }
+
+    /**
+     * Forget the metrics of every route.
+     */
+    public void reset() {
+        routes.clear();
+    }
+
+    /**
+     * Get a snapshot of the metrics of every route for the dashboard, latencies being in milliseconds.
+     * @return a map with the metrics of each route.
+     */
+    public Map<String, Object> snapshot() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Stats stats : sorted()) {
+            Map<String, Object> route = new LinkedHashMap<>();
+            route.put("route", stats.route);
+            route.put("method", stats.methodType.name());
+            route.put("requests", stats.requests.sum());
+
+            Map<String, Object> responses = new LinkedHashMap<>();
+            Map<String, Object> errors = new LinkedHashMap<>();
+            for (int i = 0; i < CLASSES.length; i++) {
+                if (i != NETWORK) responses.put(CLASSES[i], stats.classes[i].sum());
+                if (i >= 3) errors.put(CLASSES[i], stats.classes[i].sum());
+            }
+            route.put("responses", responses);
+            route.put("errors", errors);
+            route.put("bytesSent", stats.bytesSent.sum());
+            route.put("bytesReceived", stats.bytesReceived.sum());
+
+            LatencyHistogram histogram = stats.latency;
+            Map<String, Object> latency = new LinkedHashMap<>();
+            long count = histogram.getCount();
+            latency.put("count", count);
+            latency.put("mean", count == 0 ? 0.0 : histogram.getSum() / 1000.0 / count);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                latency.put(PERCENTILE_NAMES[i], histogram.valueAtPercentile(PERCENTILES[i]) / 1000.0);
+            }
+            latency.put("max", histogram.getMax() / 1000.0);
+            route.put("latency", latency);
+            list.add(route);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("routes", list);
+        return result;
+    }
+
+    /**
+     * Write the metrics of every route in the Prometheus text format, latencies being in seconds.
+     * @return the metrics
+     */
+    public String prometheus() {
+        List<Stats> all = sorted();
+        StringBuilder out = new StringBuilder();
+
+        header(out, "connectlib_requests_total", "counter", "Calls sent, by route.");
+        for (Stats stats : all) sample(out, "connectlib_requests_total", stats, null, stats.requests.sum());
+
+        header(out, "connectlib_responses_total", "counter", "Responses received, by route and status class.");
+        for (Stats stats : all) {
+            for (int i = 0; i < NETWORK; i++) sample(out, "connectlib_responses_total", stats, "class=\"" + CLASSES[i] + "\"", stats.classes[i].sum());
+        }
+
+        header(out, "connectlib_errors_total", "counter", "Calls answered with a 4xx or 5xx status, or failed without a response, by route.");
+        for (Stats stats : all) {
+            for (int i = 3; i < CLASSES.length; i++) sample(out, "connectlib_errors_total", stats, "class=\"" + CLASSES[i] + "\"", stats.classes[i].sum());
+        }
+
+        header(out, "connectlib_sent_bytes_total", "counter", "Bytes of the request bodies sent, by route.");
+        for (Stats stats : all) sample(out, "connectlib_sent_bytes_total", stats, null, stats.bytesSent.sum());
+
+        header(out, "connectlib_received_bytes_total", "counter", "Bytes of the response bodies received, by route.");
+        for (Stats stats : all) sample(out, "connectlib_received_bytes_total", stats, null, stats.bytesReceived.sum());
+
+        header(out, "connectlib_request_duration_seconds", "summary", "Duration of the calls, by route.");
+        for (Stats stats : all) {
+            LatencyHistogram histogram = stats.latency;
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                sample(out, "connectlib_request_duration_seconds", stats, "quantile=\"" + QUANTILES[i] + "\"", histogram.valueAtPercentile(PERCENTILES[i]) / 1_000_000.0);
+            }
+            sample(out, "connectlib_request_duration_seconds_sum", stats, null, histogram.getSum() / 1_000_000.0);
+            sample(out, "connectlib_request_duration_seconds_count", stats, null, histogram.getCount());
+        }
+        return out.toString();
+    }
+
+    private List<Stats> sorted() {
+        List<Stats> all = new ArrayList<>(routes.values());
+        all.sort((a, b) -> a.route.equals(b.route) ? a.methodType.compareTo(b.methodType) : a.route.compareTo(b.route));
+        return all;
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, Stats stats, String label, Number value) {
+        out.append(name).append("{route=\"").append(escape(stats.route)).append("\",method=\"").append(stats.methodType.name()).append('"');
+        if (label != null) out.append(',').append(label);
+        out.append("} ").append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Metrics of one route.
+     */
+    public static final class Stats {
+
+        private final MethodType methodType;
+        private final String route;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder[] classes = new LongAdder[CLASSES.length];
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Stats(MethodType methodType, String route) {
+            this.methodType = methodType;
+            this.route = route;
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record a call answered by the server, whatever its status.
+         * @param statusCode the HTTP status of the response.
+         * @param nanos the duration of the call in nanoseconds.
+         * @param bytesSent the size of the request body.
+         * @param bytesReceived the size of the response body.
+         */
+        public void record(int statusCode, long nanos, long bytesSent, long bytesReceived) {
+            requests.increment();
+            classes[statusCode >= 100 && statusCode < 600 ? statusCode / 100 - 1 : NETWORK].increment();
+            this.bytesSent.add(bytesSent);
+            this.bytesReceived.add(bytesReceived);
+            latency.record(nanos);
+        }
+
+        /**
+         * Record a call that failed without a response, e.g. on a timeout or a refused connection.
+         * @param nanos the time until the failure in nanoseconds.
+         * @param bytesSent the size of the request body.
+         */
+        public void failed(long nanos, long bytesSent) {
+            requests.increment();
+            classes[NETWORK].increment();
+            this.bytesSent.add(bytesSent);
+            latency.record(nanos);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package fr.sandro642.github.misc;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreads gives access to a shared executor that starts one virtual thread per task.
+ * The library is still built for Java 17, so the JDK 21 factory is looked up at runtime.
+ * On older runtimes it falls back to a bounded pool of daemon platform threads, ten per core as Reactor's
+ * boundedElastic scheduler, whose extra tasks wait in a queue instead of starting a thread each.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class VirtualThreads {
+
+    /**
+     * Shared executor, created once when the class is loaded.
+     */
+    private static final ExecutorService EXECUTOR = create();
+
+    /**
+     * True when the executor really starts virtual threads.
+     */
+    private static boolean supported;
+
+    /**
+     * Reactor scheduler backed by the shared executor.
+     */
+    private static final Scheduler SCHEDULER = Schedulers.fromExecutorService(EXECUTOR, "connectlib-virtual");
+
+    /**
+     * Get the shared executor.
+     * @return an executor starting one virtual thread per task, or a bounded platform pool before JDK 21.
+     */
+    public static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Get a Reactor scheduler backed by the shared executor.
+     * @return the scheduler running tasks on virtual threads when supported.
+     */
+    public static Scheduler scheduler() {
+        return SCHEDULER;
+    }
+
+    /**
+     * Check if the running JDK supports virtual threads.
+     * @return true if tasks submitted to {@link #executor()} run on virtual threads.
+     */
+    public static boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Creates the executor, using Executors.newVirtualThreadPerTaskExecutor() when it exists.
+     * @return the executor to share.
+     */
+    private static ExecutorService create() {
+        try {
+            ExecutorService executor = (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+            supported = true;
+            return executor;
+        } catch (Throwable ignored) {
+            AtomicInteger counter = new AtomicInteger();
+            int threads = 10 * Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "connectlib-blocking-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Idle threads stop after a minute, so the pool costs nothing when the blocking calls stop.
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
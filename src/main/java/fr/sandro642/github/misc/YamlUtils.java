@@ -6,8 +6,11 @@ import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +25,13 @@ public class YamlUtils {
 
     private ConnectLib connectLib = new ConnectLib();
 
+    /**
+     * Last parse of the `infos.yml` file, with its path and modification time.
+     */
+    private Path parsedPath;
+    private FileTime parsedModified;
+    private Map<String, Object> parsedData;
+
     /**
      * Gets the base URL from the YAML configuration file.
      * This method reads the `infos.yml` file located in the directory specified by the
@@ -80,6 +90,52 @@ public class YamlUtils {
         }
     }
 
+    /**
+     * Retrieves a section of the YAML configuration file, such as `groups`, `rateLimits`, `memoryBudget`,
+     * `outbox`, `compression` or `formats`.
+     * The `infos.yml` file is parsed once and parsed again only when it changes, so reading every section costs a single parse.
+     *
+     * @param section the name of the section.
+     * @return a map with the settings of the section, or null if there is none or an error occurs.
+     */
+    public Map<String, Object> getSection(String section) {
+        Map<String, Object> yamlData = parse();
+        if (yamlData == null || !(yamlData.get(section) instanceof Map<?, ?> map)) {
+            return null;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        map.forEach((key, value) -> result.put(String.valueOf(key), value));
+        return result;
+    }
+
+    /**
+     * Parses the `infos.yml` file, or returns its last parse if it did not change since.
+     *
+     * @return the content of the file, or null if an error occurs.
+     */
+    private synchronized Map<String, Object> parse() {
+        Path yamlFilePath = Paths.get(connectLib.StoreAndRetrieve().store.get(connectLib.StoreAndRetrieve().FILE_LOCATION_KEY)
+                + "/infos.yml");
+
+        try {
+            FileTime modified = Files.getLastModifiedTime(yamlFilePath);
+            if (yamlFilePath.equals(parsedPath) && modified.equals(parsedModified)) {
+                return parsedData;
+            }
+
+            try (InputStream inputStream = Files.newInputStream(yamlFilePath)) {
+                Yaml yaml = new Yaml();
+                parsedData = yaml.load(inputStream);
+            }
+            parsedPath = yamlFilePath;
+            parsedModified = modified;
+            return parsedData;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
     /**
      * Generates a template `infos.yml` file if it does not already exist.
      * If the file exists, it updates the routes section with the provided routes.
@@ -188,6 +244,47 @@ public class YamlUtils {
                         .append("\"\n");
             }
 
+            template.append("\n# Route groups, each with its own connection pool and limits\n")
+                    .append("#groups:\n")
+                    .append("#  reports:\n")
+                    .append("#    routes: [info, status]\n")
+                    .append("#    maxConnections: 10\n")
+                    .append("#    maxInFlight: 20\n")
+                    .append("#    queueSize: 50\n");
+
+            template.append("\n# Client-side rate limits (requests per second and burst)\n")
+                    .append("#rateLimits:\n")
+                    .append("#  baseUrls:\n")
+                    .append("#    \"http://localhost:8080/api\": { rate: 50, burst: 100 }\n")
+                    .append("#  routes:\n")
+                    .append("#    info: { rate: 5, burst: 10 }\n");
+
+            template.append("\n# Memory held by requests in flight (bytes, wait in seconds)\n")
+                    .append("#memoryBudget:\n")
+                    .append("#  maxBytes: 67108864\n")
+                    .append("#  maxWait: 30\n")
+                    .append("#  defaultResponseBytes: 65536\n");
+
+            template.append("\n# Durable outbox for mutating requests sent with durable() (bytes, retry in seconds)\n")
+                    .append("#outbox:\n")
+                    .append("#  enabled: true\n")
+                    .append("#  maxBytes: 67108864\n")
+                    .append("#  segmentBytes: 4194304\n")
+                    .append("#  batchSize: 32\n")
+                    .append("#  retryInterval: 5\n");
+
+            template.append("\n# Request bodies compressed with gzip from a size in bytes, per route\n")
+                    .append("#compression:\n")
+                    .append("#  routes:\n")
+                    .append("#    info: 1024\n");
+
+            template.append("\n# Wire formats (json, cbor, smile, msgpack), per base URL or per route\n")
+                    .append("#formats:\n")
+                    .append("#  baseUrls:\n")
+                    .append("#    \"http://localhost:8080/api\": cbor\n")
+                    .append("#  routes:\n")
+                    .append("#    info: msgpack\n");
+
             template.append("\n# Logs\n")
                     .append("enableLogs: true\n");
 
@@ -0,0 +1,487 @@
+package fr.sandro642.github.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.sandro642.github.ConnectLib;
+import fr.sandro642.github.api.ApiClient;
+import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.enums.lang.CategoriesType;
+import fr.sandro642.github.jobs.IdempotencyWindow;
+import fr.sandro642.github.limit.RequestRejectedException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Outbox is a durable write-ahead queue for mutating requests.
+ * A request sent through the outbox is first appended to a memory-mapped segment file under the data folder,
+ * then sent in order by a single replayer. While the upstream is down, requests stay on disk and are replayed
+ * in batches once it answers again; acknowledged segments are deleted.
+ * It is opt-in, with the `outbox` section of infos.yml:
+ *
+ * <pre>
+ * outbox:
+ *   enabled: true
+ *   maxBytes: 67108864
+ *   segmentBytes: 4194304
+ *   batchSize: 32
+ *   retryInterval: 5
+ * </pre>
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class Outbox {
+
+    /**
+     * Singleton instance of Outbox.
+     */
+    private static final Outbox INSTANCE = new Outbox();
+
+    /**
+     * Get the singleton instance of Outbox.
+     * @return the singleton instance
+     */
+    public static Outbox getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * connectLib is an instance of ConnectLib that provides access to the library's configuration and utilities.
+     */
+    private final ConnectLib connectLib = new ConnectLib();
+
+    /**
+     * ObjectMapper shared to encode and decode the entries, configured like the JSON mapper of the calls
+     * so a body that can be sent can also be stored.
+     */
+    private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    /**
+     * Settings of the outbox.
+     */
+    private Path directory;
+    private long maxBytes = 64L * 1024 * 1024;
+    private int segmentBytes = 4 * 1024 * 1024;
+    private int batchSize = 32;
+    private Duration retryInterval = Duration.ofSeconds(5);
+
+    /**
+     * Segments in order, the sequence number of the next entry and of the last acknowledged one.
+     */
+    private final List<OutboxSegment> segments = new ArrayList<>();
+    private long nextSeq = 1;
+    private long ackedSeq;
+
+    /**
+     * Mapping of the file holding the last acknowledged sequence number.
+     */
+    private MappedByteBuffer ackBuffer;
+
+    /**
+     * Position of the next entry to replay: index of its segment and position in it.
+     */
+    private int readSegment;
+    private int readPosition;
+
+    /**
+     * Callers waiting for the response of an entry recorded by this process.
+     */
+    private final Map<Long, Sinks.One<ApiFactory>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Replayer state and timer.
+     */
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private Disposable timer;
+
+    /**
+     * Number of times the outbox was closed, so a replay still running when it was closed leaves the next files alone.
+     */
+    private long generation;
+
+    /**
+     * Counters for the dashboard.
+     */
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+
+    /**
+     * Private constructor to enforce singleton pattern.
+     */
+    private Outbox() {}
+
+    /**
+     * Load the outbox from the `outbox` section of infos.yml. Nothing is done unless `enabled` is true.
+     * @param yamlOutbox the `outbox` section, can be null.
+     */
+    public void load(Map<String, Object> yamlOutbox) {
+        if (yamlOutbox == null || !Boolean.TRUE.equals(yamlOutbox.get("enabled"))) {
+            return;
+        }
+
+        try {
+            long max = yamlOutbox.get("maxBytes") instanceof Number n ? n.longValue() : maxBytes;
+            int segment = yamlOutbox.get("segmentBytes") instanceof Number n ? n.intValue() : segmentBytes;
+            int batch = yamlOutbox.get("batchSize") instanceof Number n ? n.intValue() : batchSize;
+            Duration retry = yamlOutbox.get("retryInterval") instanceof Number n ? Duration.ofMillis((long) (n.doubleValue() * 1000)) : retryInterval;
+            open(Paths.get(connectLib.HookManager().BASE_PATH(), "outbox"), max, segment, batch, retry);
+        } catch (Exception e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.OUTBOX_PACKAGE, "outbox.error", "exception", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Open the outbox in a directory, recover the entries left by a previous run and start replaying them.
+     * @param directory the directory of the segment files.
+     * @param maxBytes the most disk space the segments may use.
+     * @param segmentBytes the size of one segment file.
+     * @param batchSize the number of entries replayed before the progress is saved.
+     * @param retryInterval the delay between two replay attempts while the upstream is down.
+     * @return Outbox for chaining
+     * @throws IOException if the files cannot be opened.
+     */
+    public synchronized Outbox open(Path directory, long maxBytes, int segmentBytes, int batchSize, Duration retryInterval) throws IOException {
+        if (segmentBytes < 1024 || maxBytes < segmentBytes || batchSize < 1 || retryInterval == null || retryInterval.isNegative() || retryInterval.isZero()) {
+            throw new IllegalArgumentException("outbox settings must satisfy 1024 <= segmentBytes <= maxBytes, batchSize >= 1 and retryInterval > 0");
+        }
+
+        close();
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        this.batchSize = batchSize;
+        this.retryInterval = retryInterval;
+
+        Files.createDirectories(directory);
+
+        try (FileChannel channel = FileChannel.open(directory.resolve("outbox.ack"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ackBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        ackedSeq = ackBuffer.getLong(0);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().matches("segment-\\d{20}\\.log")).sorted().toList();
+        }
+        for (Path file : files) {
+            long firstSeq = Long.parseLong(file.getFileName().toString().substring(8, 28));
+            segments.add(OutboxSegment.open(file, firstSeq, segmentBytes));
+        }
+
+        nextSeq = Math.max(ackedSeq, segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getLastSeq()) + 1;
+        seekAfter(ackedSeq);
+        compact();
+
+        timer = Flux.interval(retryInterval, retryInterval).subscribe(tick -> replay());
+        replay();
+        return this;
+    }
+
+    /**
+     * Check if the outbox is open.
+     * @return true if requests can be recorded
+     */
+    public synchronized boolean isEnabled() {
+        return ackBuffer != null;
+    }
+
+    /**
+     * Record a mutating request and send it once every request recorded before it has been delivered.
+     * The request is on disk as soon as the returned Mono is subscribed, and is sent even if the subscriber cancels
+     * or the process restarts. The Mono emits the response if it is received by this process.
+     * @param entry the request.
+     * @return a Mono emitting the response.
+     */
+    public Mono<ApiFactory> send(OutboxEntry entry) {
+        return Mono.defer(() -> {
+            Sinks.One<ApiFactory> sink = Sinks.one();
+            long seq;
+            try {
+                seq = append(MAPPER.writeValueAsBytes(entry), sink);
+            } catch (RequestRejectedException e) {
+                return Mono.error(e);
+            } catch (Exception e) {
+                connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.OUTBOX_PACKAGE, "outbox.error", "exception", String.valueOf(e.getMessage())));
+                return Mono.error(e);
+            }
+            replay();
+            // The request is still delivered, but nobody waits for its response anymore.
+            return sink.asMono().doOnCancel(() -> waiting.remove(seq, sink));
+        });
+    }
+
+    /**
+     * Get a snapshot of the outbox for the dashboard.
+     * @return a map describing the pending entries and the counters
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        synchronized (this) {
+            result.put("enabled", ackBuffer != null);
+            result.put("pending", nextSeq - 1 - ackedSeq);
+            result.put("segments", segments.size());
+            result.put("diskBytes", (long) segments.stream().mapToInt(OutboxSegment::getCapacity).sum());
+        }
+        result.put("recorded", recorded.sum());
+        result.put("delivered", delivered.sum());
+        result.put("dropped", dropped.sum());
+        result.put("failedAttempts", failedAttempts.sum());
+        return result;
+    }
+
+    /**
+     * Stop replaying and release the files. Pending entries stay on disk for the next run.
+     */
+    public synchronized void close() {
+        if (timer != null) {
+            timer.dispose();
+            timer = null;
+        }
+        generation++;
+        if (ackBuffer != null) {
+            // Keep the progress of the batch being replayed, its end will not be saved anymore.
+            ackBuffer.putLong(0, ackedSeq);
+            ackBuffer.force();
+        }
+        segments.clear();
+        ackBuffer = null;
+        readSegment = 0;
+        readPosition = 0;
+    }
+
+    /**
+     * Append an entry to the last segment, opening a new one when it is full.
+     * The caller waiting for its response is registered under the same lock, before a replay can read the entry.
+     * @param payload the encoded entry.
+     * @param sink the caller waiting for the response.
+     * @return the sequence number of the entry.
+     * @throws IOException if a new segment cannot be created.
+     */
+    private synchronized long append(byte[] payload, Sinks.One<ApiFactory> sink) throws IOException {
+        if (ackBuffer == null) {
+            throw new IllegalStateException("The outbox is not enabled");
+        }
+        if (OutboxSegment.HEADER_BYTES + payload.length + 4 > segmentBytes) {
+            throw new RequestRejectedException("Request of " + payload.length + " bytes does not fit in an outbox segment of " + segmentBytes + " bytes");
+        }
+
+        long seq = nextSeq;
+        OutboxSegment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+
+        if (last == null || !last.append(seq, payload)) {
+            compact();
+            if ((long) (segments.size() + 1) * segmentBytes > maxBytes) {
+                connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.OUTBOX_PACKAGE, "outbox.full", "max", String.valueOf(maxBytes)));
+                throw new RequestRejectedException("Outbox is full (" + maxBytes + " bytes)");
+            }
+            last = OutboxSegment.open(directory.resolve(String.format("segment-%020d.log", seq)), seq, segmentBytes);
+            segments.add(last);
+            last.append(seq, payload);
+        }
+
+        waiting.put(seq, sink);
+        nextSeq++;
+        recorded.increment();
+        return seq;
+    }
+
+    /**
+     * Read the next batch of entries to replay, without moving the read position.
+     * @return the sequence numbers and the encoded entries, in order.
+     */
+    private synchronized List<Map.Entry<Long, byte[]>> nextBatch() {
+        List<Map.Entry<Long, byte[]>> batch = new ArrayList<>();
+        int segmentIndex = readSegment;
+        int position = readPosition;
+
+        while (batch.size() < batchSize && segmentIndex < segments.size()) {
+            OutboxSegment segment = segments.get(segmentIndex);
+            byte[] payload = segment.payloadAt(position);
+            if (payload == null) {
+                segmentIndex++;
+                position = 0;
+                continue;
+            }
+            batch.add(Map.entry(segment.seqAt(position), payload));
+            position = segment.next(position);
+        }
+        return batch;
+    }
+
+    /**
+     * Send the pending entries in order, one at a time, until one fails or none is left.
+     * Progress is saved after every batch, and fully acknowledged segments are deleted.
+     */
+    private void replay() {
+        if (!isEnabled() || !replaying.compareAndSet(false, true)) {
+            return;
+        }
+
+        long run;
+        synchronized (this) {
+            run = generation;
+        }
+        List<Map.Entry<Long, byte[]>> batch = nextBatch();
+        if (batch.isEmpty()) {
+            replaying.set(false);
+            return;
+        }
+
+        AtomicBoolean complete = new AtomicBoolean();
+
+        Flux.fromIterable(batch)
+                .concatMap(record -> deliver(record.getKey(), record.getValue()))
+                .takeWhile(seq -> seq > 0)
+                .doOnNext(seq -> advance(run, seq))
+                .count()
+                .doOnNext(count -> complete.set(count == batch.size()))
+                .doFinally(signal -> {
+                    acknowledge(run);
+                    replaying.set(false);
+                    // A full batch went through: the upstream is back, keep going without waiting for the timer.
+                    if (complete.get()) replay();
+                })
+                .subscribe(count -> {}, error -> {});
+    }
+
+    /**
+     * Send one entry.
+     * @param seq the sequence number of the entry.
+     * @param payload the encoded entry.
+     * @return a Mono emitting the sequence number if the entry is done with, or -1 if it must be sent again later.
+     */
+    private Mono<Long> deliver(long seq, byte[] payload) {
+        OutboxEntry entry;
+        try {
+            entry = MAPPER.readValue(payload, OutboxEntry.class);
+        } catch (IOException e) {
+            connectLib.Logger().ERROR(connectLib.LangManager().getMessage(CategoriesType.OUTBOX_PACKAGE, "outbox.error", "exception", String.valueOf(e.getMessage())));
+            dropped.increment();
+            Sinks.One<ApiFactory> sink = waiting.remove(seq);
+            if (sink != null) sink.tryEmitError(e);
+            return Mono.just(seq);
+        }
+
+        Map<String, String> headers = entry.idempotencyKey() == null ? Map.of() : Map.of(IdempotencyWindow.HEADER, entry.idempotencyKey());
+
+        return new ApiClient(entry.baseUrl())
+                .codec(connectLib.Codecs().codecOf(entry.routeName(), entry.baseUrl()))
+                .compressRequestsAbove(connectLib.Compression().thresholdOf(entry.routeName()))
+                .routeName(entry.routeName())
+                .callAPI(entry.method(), entry.route(), entry.body(), headers)
+                .map(response -> {
+                    int statusCode = response.getStatusCode();
+                    if (statusCode >= 500 || statusCode == 429) {
+                        failedAttempts.increment();
+                        return -1L;
+                    }
+                    if (statusCode >= 400) {
+                        // The server refused the request itself: sending it again would not change the answer.
+                        dropped.increment();
+                        connectLib.Logger().WARN(connectLib.LangManager().getMessage(CategoriesType.OUTBOX_PACKAGE, "outbox.dropped", Map.of("route", entry.route(), "status", String.valueOf(statusCode))));
+                    } else {
+                        delivered.increment();
+                    }
+                    Sinks.One<ApiFactory> sink = waiting.remove(seq);
+                    if (sink != null) sink.tryEmitValue(response);
+                    return seq;
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    delivered.increment();
+                    Sinks.One<ApiFactory> sink = waiting.remove(seq);
+                    if (sink != null) sink.tryEmitEmpty();
+                    return seq;
+                }))
+                .onErrorResume(error -> {
+                    failedAttempts.increment();
+                    return Mono.just(-1L);
+                });
+    }
+
+    /**
+     * Move the read position past a delivered entry.
+     * @param run the generation the replay started in.
+     * @param seq the sequence number of the delivered entry.
+     */
+    private synchronized void advance(long run, long seq) {
+        if (ackBuffer == null || run != generation) return;
+        ackedSeq = seq;
+
+        OutboxSegment segment = readSegment < segments.size() ? segments.get(readSegment) : null;
+        if (segment == null || segment.seqAt(readPosition) != seq) {
+            seekAfter(seq);
+            return;
+        }
+
+        readPosition = segment.next(readPosition);
+        if (segment.seqAt(readPosition) == -1 && readSegment < segments.size() - 1) {
+            readSegment++;
+            readPosition = 0;
+        }
+    }
+
+    /**
+     * Save the last acknowledged sequence number and delete the segments it covers.
+     * @param run the generation the replay started in.
+     */
+    private synchronized void acknowledge(long run) {
+        if (ackBuffer == null || run != generation) return;
+        ackBuffer.putLong(0, ackedSeq);
+        ackBuffer.force();
+        compact();
+    }
+
+    /**
+     * Delete the segments whose entries are all acknowledged, except the one being written.
+     */
+    private void compact() {
+        while (segments.size() > 1 && segments.get(0).getLastSeq() <= ackedSeq) {
+            if (!segments.get(0).delete()) break;
+            segments.remove(0);
+            readSegment = Math.max(0, readSegment - 1);
+        }
+    }
+
+    /**
+     * Place the read position on the first entry after a sequence number.
+     * @param seq the sequence number.
+     */
+    private void seekAfter(long seq) {
+        readSegment = 0;
+        readPosition = 0;
+        while (readSegment < segments.size()) {
+            OutboxSegment segment = segments.get(readSegment);
+            if (segment.getLastSeq() <= seq && readSegment < segments.size() - 1) {
+                readSegment++;
+                continue;
+            }
+            while (segment.seqAt(readPosition) != -1 && segment.seqAt(readPosition) <= seq) {
+                readPosition = segment.next(readPosition);
+            }
+            return;
+        }
+    }
+}
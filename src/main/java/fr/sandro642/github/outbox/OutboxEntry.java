@@ -0,0 +1,24 @@
+package fr.sandro642.github.outbox;
+
+import fr.sandro642.github.enums.MethodType;
+
+import java.util.Map;
+
+/**
+ * OutboxEntry is a mutating request recorded in the outbox, stored as JSON in a segment.
+ *
+ * @param baseUrl the base URL the request is sent to.
+ * @param method the HTTP method.
+ * @param routeName the name of the route.
+ * @param route the rendered route.
+ * @param body the body of the request, can be null.
+ * @param idempotencyKey the idempotency key sent with every attempt, so the server applies the request once.
+ * @param createdAt when the request was recorded, in epoch milliseconds.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public record OutboxEntry(String baseUrl, MethodType method, String routeName, String route, Map<String, Object> body,
+                          String idempotencyKey, long createdAt) {
+}
@@ -0,0 +1,197 @@
+package fr.sandro642.github.outbox;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * OutboxSegment is one append-only, memory-mapped file of the outbox.
+ * Each record is laid out as [int length][int crc32][long seq][payload], and a zero length marks the end of the data,
+ * since a freshly mapped file is filled with zeros. A record cut short by a crash fails its checksum
+ * and is dropped when the segment is opened again, together with everything after it.
+ *
+ * @author Sandro642
+ * @version 1.0
+ */
+
+class OutboxSegment {
+
+    /**
+     * Size of the header of a record: length, checksum and sequence number.
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * Path of the file.
+     */
+    private final Path path;
+
+    /**
+     * Sequence number of the first record of the segment, also encoded in the file name.
+     */
+    private final long firstSeq;
+
+    /**
+     * Mapping of the whole file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Position where the next record is written, and sequence number of the last record.
+     */
+    private int writePosition;
+    private long lastSeq;
+
+    private OutboxSegment(Path path, long firstSeq, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.buffer = buffer;
+        this.lastSeq = firstSeq - 1;
+    }
+
+    /**
+     * Open a segment, creating it with the given capacity if it does not exist, and find the end of its valid records.
+     * @param path the path of the file.
+     * @param firstSeq the sequence number of its first record.
+     * @param capacity the size of the file when it is created.
+     * @return the segment
+     * @throws IOException if the file cannot be mapped.
+     */
+    static OutboxSegment open(Path path, long firstSeq, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), capacity);
+            OutboxSegment segment = new OutboxSegment(path, firstSeq, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segment.recover();
+            return segment;
+        }
+    }
+
+    /**
+     * Append a record.
+     * @param seq the sequence number of the record.
+     * @param payload the content of the record.
+     * @return false if the segment has no room left for it.
+     */
+    boolean append(long seq, byte[] payload) {
+        int recordBytes = HEADER_BYTES + payload.length;
+        // Keep room for the zero length that ends the data.
+        if (writePosition + recordBytes + 4 > buffer.capacity()) {
+            return false;
+        }
+
+        int position = writePosition;
+        buffer.putLong(position + 8, seq);
+        buffer.put(position + HEADER_BYTES, payload);
+        buffer.putInt(position + 4, checksum(seq, payload));
+        // The length is written last: a record is only visible once it is complete.
+        buffer.putInt(position, payload.length);
+        buffer.force(position, recordBytes);
+
+        writePosition += recordBytes;
+        lastSeq = seq;
+        return true;
+    }
+
+    /**
+     * Read the sequence number of the record at a position.
+     * @param position the position of the record.
+     * @return the sequence number, or -1 if there is no record there.
+     */
+    long seqAt(int position) {
+        return position < writePosition ? buffer.getLong(position + 8) : -1;
+    }
+
+    /**
+     * Read the content of the record at a position.
+     * @param position the position of the record.
+     * @return the content, or null if there is no record there.
+     */
+    byte[] payloadAt(int position) {
+        if (position >= writePosition) {
+            return null;
+        }
+        byte[] payload = new byte[buffer.getInt(position)];
+        buffer.get(position + HEADER_BYTES, payload);
+        return payload;
+    }
+
+    /**
+     * Get the position of the record following the one at a position.
+     * @param position the position of a record.
+     * @return the position of the next record.
+     */
+    int next(int position) {
+        return position + HEADER_BYTES + buffer.getInt(position);
+    }
+
+    long getFirstSeq() {
+        return firstSeq;
+    }
+
+    long getLastSeq() {
+        return lastSeq;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Delete the file of the segment.
+     * @return false if it could not be deleted yet, e.g. while still mapped on Windows.
+     */
+    boolean delete() {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scan the records and stop at the first one that is missing or corrupt.
+     */
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+
+            long seq = buffer.getLong(position + 8);
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_BYTES, payload);
+            if (checksum(seq, payload) != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            lastSeq = seq;
+            position += HEADER_BYTES + length;
+        }
+
+        writePosition = position;
+        // Wipe a torn record so it is not mistaken for data after new appends.
+        if (position + 4 <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+    }
+
+    private static int checksum(long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int i = 56; i >= 0; i -= 8) {
+            crc.update((int) (seq >>> i));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
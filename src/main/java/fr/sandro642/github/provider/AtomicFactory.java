@@ -1,6 +1,7 @@
 package fr.sandro642.github.provider;
 
 import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.api.FactoryMapper;
 
 import java.util.Map;
 
@@ -15,4 +16,15 @@ public abstract class AtomicFactory {
     protected Map<?,?> rawPhysx() {
         return apiFactory.getRawData();
     }
+
+    /**
+     * Keep the response and bind its values into the fields of the subclass,
+     * each field being bound to the value named by its {@link FieldPath} annotation or to the top-level value of its name.
+     * The accessors of a subclass are generated once, on its first binding.
+     * @param apiFactory the response.
+     */
+    protected void bindPhysx(ApiFactory apiFactory) {
+        getPhysx(apiFactory);
+        FactoryMapper.of(getClass()).bind(apiFactory, this);
+    }
 }
@@ -0,0 +1,23 @@
+package fr.sandro642.github.provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * CodecProvider is an interface that provides the wire format used to encode request bodies and decode responses.
+ * Classes implementing this interface must define the media type they are negotiated with and the ObjectMapper reading and writing them.
+ */
+
+public interface CodecProvider {
+
+    /**
+     * Gets the media type of the format, sent in the Content-Type and Accept headers.
+     * @return the media type, e.g. "application/cbor"
+     */
+    String getMediaType();
+
+    /**
+     * Gets the ObjectMapper reading and writing the format. It is shared, so it must not be reconfigured.
+     * @return the ObjectMapper
+     */
+    ObjectMapper getMapper();
+}
@@ -0,0 +1,17 @@
+package fr.sandro642.github.provider;
+
+import java.util.concurrent.Executor;
+
+/**
+ * ExecutorProvider is an interface that provides the executor on which the results of a job are delivered.
+ * Classes implementing this interface must define the getExecutor() method to return their Executor.
+ */
+
+public interface ExecutorProvider {
+
+    /**
+     * Gets the executor used to deliver the results.
+     * @return the Executor
+     */
+    Executor getExecutor();
+}
@@ -0,0 +1,29 @@
+package fr.sandro642.github.provider;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * FieldPath is an annotation that tells which value of the response a field of an AtomicFactory subclass is bound to.
+ * Without it, a field is bound to the top-level value of the same name.
+ *
+ * <pre>
+ * public class Guild extends AtomicFactory {
+ *     &#64;FieldPath("$.guild.members[0].name") String owner;
+ *     int online;
+ * }
+ * </pre>
+ */
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface FieldPath {
+
+    /**
+     * The path of the value, e.g. `$.guild.members[0].name`.
+     * @return the path
+     */
+    String value();
+}
@@ -0,0 +1,17 @@
+package fr.sandro642.github.provider;
+
+/**
+ * ProgressListener is an interface that receives the progress of a download or an upload.
+ * It is called from the thread moving the data, so it must return quickly.
+ */
+
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called each time a chunk of data has been transferred.
+     * @param transferred the number of bytes transferred so far, including the part already present when resuming.
+     * @param total the total number of bytes, or -1 if it is not known.
+     */
+    void onProgress(long transferred, long total);
+}
@@ -2,6 +2,8 @@ package fr.sandro642.github.spring.controller;
 
 import fr.sandro642.github.ConnectLib;
 import fr.sandro642.github.spring.dto.Request;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
@@ -50,6 +52,11 @@ public class DataController {
      */
     private final Map<Long, Request> requestsMap = new ConcurrentHashMap<>();
 
+    /**
+     * One request in DETAIL_SAMPLING keeps the path it called once it succeeds; failed requests always keep it.
+     */
+    private static final int DETAIL_SAMPLING = 10;
+
     /**
      * Endpoint to get the status of the ConnectLib.
      * @return a map containing the initialization status and resource type
@@ -106,6 +113,47 @@ public class DataController {
         return result;
     }
 
+    /**
+     * Endpoint to get the state of the client-side limits.
+     * @return a map containing the default admission queue, the route groups, the rate limits, the memory budget, the outbox, the polls and the compression ratios, with their counters per priority class
+     */
+    @GetMapping("/limits")
+    public Map<String, Object> getLimits() {
+        Map<String, Object> result = new HashMap<>();
+
+        result.put("portInfo", connectLib.StoreAndRetrieve().get(connectLib.StoreAndRetrieve().DYNAMIC_PORT));
+        result.put("nameComponent", connectLib.StoreAndRetrieve().get(connectLib.StoreAndRetrieve().NAME_DASHBOARD));
+        result.put("admission", connectLib.AdmissionController().snapshot());
+        result.put("groups", connectLib.RouteGroupManager().snapshot());
+        result.put("rateLimits", connectLib.RateLimiterManager().snapshot());
+        result.put("memory", connectLib.MemoryBudget().snapshot());
+        result.put("outbox", connectLib.Outbox().snapshot());
+        result.put("polls", connectLib.PollingEngine().snapshot());
+        result.put("compression", connectLib.Compression().snapshot());
+
+        return result;
+    }
+
+    /**
+     * Endpoint to get the metrics of every route: requests, responses and errors by status class, bytes and latency percentiles.
+     * @param format `json` for the dashboard, `prometheus` for the Prometheus text format.
+     * @return the metrics in the format asked
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getMetrics(@RequestParam(defaultValue = "json") String format) {
+        if ("prometheus".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8"))
+                    .body(connectLib.RouteMetrics().prometheus());
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("portInfo", connectLib.StoreAndRetrieve().get(connectLib.StoreAndRetrieve().DYNAMIC_PORT));
+        result.put("nameComponent", connectLib.StoreAndRetrieve().get(connectLib.StoreAndRetrieve().NAME_DASHBOARD));
+        result.putAll(connectLib.RouteMetrics().snapshot());
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/config")
     public Map<String, Object> getConfig() {
         Map<String, Object> config = new HashMap<>();
@@ -115,17 +163,21 @@ public class DataController {
 
     /**
      * Endpoint to create a new request.
-     * @param route the route for the request
+     * The request is tagged with the name of its route, so the requests of a route can be grouped;
+     * the path called, with its parameters substituted, is only kept in the details of sampled and failed requests.
+     * @param route the name of the route for the request, from the route table
+     * @param path the path called
      * @param branch the branch for the request
      * @return the created Request object
      */
-    public Request createRequest(String route, String branch) {
+    public Request createRequest(String route, String path, String branch) {
         if (route == null || branch == null) {
             throw new IllegalArgumentException("route and branch are required");
         }
         long id = requestIdCounter.incrementAndGet();
 
         Request req = new Request(connectLib.StoreAndRetrieve().get(connectLib.StoreAndRetrieve().DYNAMIC_PORT).toString(), id, route, branch, "pending");
+        req.setPath(path);
         requestsMap.put(id, req);
         return req;
     }
@@ -149,6 +201,9 @@ public class DataController {
         }
 
         existing.setStatus(status);
+        if ("success".equals(status) && id % DETAIL_SAMPLING != 1) {
+            existing.setPath(null);
+        }
         requestsMap.put(id, existing);
         return existing;
     }
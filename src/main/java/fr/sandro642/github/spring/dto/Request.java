@@ -20,10 +20,15 @@ public class Request {
     private Long id;
 
     /**
-     * Route associated with the request
+     * Route associated with the request, the name of the route in the route table
      */
     private String route;
 
+    /**
+     * Path called by the request, with its parameters substituted, kept only for sampled and failed requests
+     */
+    private String path;
+
     /**
      * Branch associated with the request
      */
@@ -79,6 +84,18 @@ public class Request {
      */
     public void setRoute(String route) { this.route = route; }
 
+    /**
+     * Get the path called by the request.
+     * @return the path, or null if the details of the request were not sampled
+     */
+    public String getPath() { return path; }
+
+    /**
+     * Set the path called by the request.
+     * @param path the path to set
+     */
+    public void setPath(String path) { this.path = path; }
+
     /**
      * Get the branch associated with the request.
      * @return the branch
@@ -0,0 +1,265 @@
+package fr.sandro642.github.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.sandro642.github.enums.FormatType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JsonTapeTest checks that a document read through JsonTape gives the same values, with the same types, as Jackson.
+ * It lives in the api package to reach JsonTape, which is package-private.
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class JsonTapeTest {
+
+    private static final ObjectMapper MAPPER = FormatType.JSON.getMapper();
+
+    /**
+     * Document read by the projection tests: escaped names, brackets inside strings and subtrees to skip.
+     */
+    private static final String GUILD = "{\"x\":[1,{\"a\":\"]}\\\\\\\"\"},3],"
+            + "\"guild\":{\"n\\u0061me\":\"g\",\"online\":12,\"skip\":{\"deep\":[[{}],\"}\"]},"
+            + "\"members\":[{\"name\":\"a\",\"z\":1},{\"name\":\"b\"},{\"name\":\"c\",\"id\":[1,2]}]},\"tail\":true}";
+    private static final Projection GUILD_PROJECTION = Projection.of("$.guild.name", "$.guild.online", "$.guild.members[2]", "$.guild.members[0].name", "$.x[1]");
+
+    @Test
+    public void escapesMatchJackson() throws Exception {
+        assertSameAsJackson("{\"a\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\"}");
+        assertSameAsJackson("{\"a\":\"\\u00e9\\u4e2d\\u0000\",\"\\u006b\\u0065y\":1}");
+        assertSameAsJackson("{\"a\":\"caf\u00e9 \u4e2d\u6587\"}");
+        assertSameAsJackson("{\"a\":\"\\uD83D\\uDE00 and \\ud83c\\udf89\"}");
+        assertSameAsJackson("{\"a\":\"\uD83D\uDE00\",\"\uD83C\uDF89\":true}");
+        assertSameAsJackson("{\"a\":\"\\uD83D\"}");
+    }
+
+    @Test
+    public void integersMatchJackson() throws Exception {
+        String[] values = {
+                "0", "-0", "7", "-7",
+                String.valueOf(Integer.MAX_VALUE), String.valueOf(Integer.MAX_VALUE + 1L),
+                String.valueOf(Integer.MIN_VALUE), String.valueOf(Integer.MIN_VALUE - 1L),
+                String.valueOf(Long.MAX_VALUE), BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE).toString(),
+                String.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MIN_VALUE).subtract(BigInteger.ONE).toString(),
+                "123456789012345678901234567890", "-123456789012345678901234567890"
+        };
+        for (String value : values) {
+            assertSameAsJackson("{\"a\":" + value + ",\"b\":[" + value + "]}");
+        }
+    }
+
+    @Test
+    public void decimalsMatchJackson() throws Exception {
+        String[] values = {
+                "0.0", "-0.0", "0.1", "-2.5", "1e3", "1E+3", "-2.5e-3", "6.02214076E23",
+                "1.7976931348623157e308", "4.9e-324", "123456789012345678901234567890.5", "0.30000000000000004"
+        };
+        for (String value : values) {
+            assertSameAsJackson("{\"a\":" + value + "}");
+        }
+    }
+
+    @Test
+    public void containersMatchJackson() throws Exception {
+        assertSameAsJackson("{}");
+        assertSameAsJackson("[]");
+        assertSameAsJackson("{\"a\":{},\"b\":[],\"c\":[[],{},[{}]],\"d\":null}");
+        assertSameAsJackson(" \n\t{ \"a\" : [ 1 , true , false , null ] , \"b\" : { } } \r\n");
+        assertSameAsJackson("\"alone\"");
+        assertSameAsJackson("42");
+    }
+
+    @Test
+    public void duplicateKeysKeepTheLastValue() throws Exception {
+        assertSameAsJackson("{\"a\":1,\"b\":2,\"a\":3}");
+        assertSameAsJackson("{\"a\":{\"x\":1},\"a\":[2]}");
+    }
+
+    @Test
+    public void randomDocumentsMatchJackson() throws Exception {
+        Random random = new Random(642);
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("v", randomValue(random, 0));
+            document.put("w", randomValue(random, 0));
+            assertSameAsJackson(MAPPER.writeValueAsString(document));
+        }
+    }
+
+    @Test
+    public void invalidDocumentsAreRejected() {
+        String[] documents = {
+                "", " ", "{", "}", "[1,]", "[1 2]", "{\"a\":}", "{\"a\" 1}", "{\"a\":1,}", "{a:1}", "{'a':1}",
+                "{\"a\":01}", "{\"a\":1.}", "{\"a\":.5}", "{\"a\":1e}", "{\"a\":+1}", "-", "{\"a\":tru}", "{\"a\":nul}",
+                "{\"a\":\"\\x\"}", "{\"a\":\"\\u12\"}", "{\"a\":\"\u0001\"}", "{\"a\":\"open}", "{} x", "[1]]"
+        };
+        for (String document : documents) {
+            assertThrows(IllegalArgumentException.class, () -> JsonTape.parse(document), document);
+        }
+    }
+
+    @Test
+    public void projectedParseKeepsOnlyTheProjectedPaths() throws Exception {
+        String json = GUILD;
+        Projection projection = GUILD_PROJECTION;
+
+        Map<String, Object> full = MAPPER.readValue(json, new TypeReference<>() {});
+        Map<String, Object> expected = new LinkedHashMap<>();
+        List<Object> x = new ArrayList<>();
+        x.add(null);
+        x.add(((List<?>) full.get("x")).get(1));
+        x.add(null);
+        expected.put("x", x);
+        Map<?, ?> fullGuild = (Map<?, ?>) full.get("guild");
+        List<?> fullMembers = (List<?>) fullGuild.get("members");
+        List<Object> members = new ArrayList<>();
+        members.add(Map.of("name", "a"));
+        members.add(null);
+        members.add(fullMembers.get(2));
+        Map<String, Object> guild = new LinkedHashMap<>();
+        guild.put("name", "g");
+        guild.put("online", 12);
+        guild.put("members", members);
+        expected.put("guild", guild);
+
+        assertEquals(expected, JsonTape.parse(json, projection).materialize(0));
+        assertEquals(full, JsonTape.parse(json, Projection.of("$")).materialize(0));
+        assertEquals(Map.of(), JsonTape.parse("{\"a\":1}", Projection.of("$.b")).materialize(0));
+        assertThrows(IllegalArgumentException.class, () -> JsonTape.parse("{\"a\":[1,}", projection));
+    }
+
+    @Test
+    public void projectedReadsMatchFullReads() throws Exception {
+        byte[] cbor = FormatType.CBOR.getMapper().writeValueAsBytes(MAPPER.readValue(GUILD, Object.class));
+        ApiFactory[] readers = {
+                ApiFactory.ofJson(200, Map.of(), null, GUILD, null),
+                ApiFactory.ofJson(200, Map.of(), null, GUILD, GUILD_PROJECTION),
+                ApiFactory.ofBytes(200, Map.of(), null, cbor, FormatType.CBOR, null),
+                ApiFactory.ofBytes(200, Map.of(), null, cbor, FormatType.CBOR, GUILD_PROJECTION)
+        };
+
+        for (String path : List.of("$.guild.name", "$.guild.online", "$.guild.members[0].name", "$.guild.members[2].id", "$.x[1].a")) {
+            Object expected = readers[0].select(path);
+            for (ApiFactory reader : readers) {
+                assertEquals(expected, reader.select(path), path);
+            }
+        }
+        assertEquals("g", readers[1].select("$.guild.name"));
+    }
+
+    @Test
+    public void scalarsReadWithoutMaterializing() {
+        JsonTape tape = JsonTape.parse("{\"n\":42,\"d\":2.5,\"o\":{\"x\":[1,{\"y\":true}]},\"big\":123456789012,\"s\":\"a\\tb\"}");
+        assertEquals(42L, tape.longAt(tape.field(0, "n")));
+        assertEquals(2.5, tape.doubleAt(tape.field(0, "d")));
+        assertEquals(2L, tape.longAt(tape.field(0, "d")));
+        assertEquals(123456789012L, tape.longAt(tape.field(0, "big")));
+        assertEquals("a\tb", tape.stringAt(tape.field(0, "s")));
+
+        int x = tape.field(tape.field(0, "o"), "x");
+        assertEquals(true, tape.booleanAt(tape.field(tape.element(x, 1), "y")));
+        assertEquals(-1, tape.element(x, 2));
+        assertEquals(-1, tape.field(0, "missing"));
+        assertThrows(IllegalArgumentException.class, () -> tape.longAt(tape.field(0, "s")));
+    }
+
+    @Test
+    public void integersBeyondLongAreNotWrapped() {
+        JsonTape tape = JsonTape.parse("{\"a\":123456789012345678901234567890,\"b\":-9223372036854775808}");
+        assertThrows(ArithmeticException.class, () -> tape.longAt(tape.field(0, "a")));
+        assertEquals(Long.MIN_VALUE, tape.longAt(tape.field(0, "b")));
+    }
+
+    @Test
+    public void documentsTooLargeForTheTapeAreDecodedByJackson() {
+        String text = "x".repeat((1 << 23) + 1);
+        String json = "{\"big\":\"" + text + "\",\"n\":1}";
+        assertThrows(JsonTape.TooLargeException.class, () -> JsonTape.parse(json));
+
+        ApiFactory response = ApiFactory.ofJson(200, Map.of(), null, json, null);
+        assertTrue(response.hasData());
+        assertEquals(text, response.getData("big"));
+        assertEquals(1L, response.getLong("n"));
+
+        ApiFactory projected = ApiFactory.ofJson(200, Map.of(), null, json, Projection.of("$.n"));
+        assertEquals(Map.of("n", 1), projected.getRawData());
+    }
+
+    private static void assertSameAsJackson(String json) throws Exception {
+        Object expected = MAPPER.readValue(json, Object.class);
+        Object actual = JsonTape.parse(json).materialize(0);
+        assertEquals(expected, actual, json);
+        assertSameTypes(expected, actual, json);
+    }
+
+    /**
+     * Checks that the numbers have the same boxed types, which equals() does not compare across containers.
+     */
+    private static void assertSameTypes(Object expected, Object actual, String json) {
+        if (expected instanceof Map<?, ?> map) {
+            Map<?, ?> other = (Map<?, ?>) actual;
+            map.forEach((key, value) -> assertSameTypes(value, other.get(key), json));
+        } else if (expected instanceof List<?> list) {
+            List<?> other = (List<?>) actual;
+            for (int i = 0; i < list.size(); i++) {
+                assertSameTypes(list.get(i), other.get(i), json);
+            }
+        } else if (expected != null) {
+            assertEquals(expected.getClass(), actual.getClass(), json);
+        }
+    }
+
+    /**
+     * Builds a random value: numbers of every size, strings with escapes and non-ASCII characters, and nested containers.
+     */
+    private static Object randomValue(Random random, int depth) {
+        switch (random.nextInt(depth > 4 ? 6 : 8)) {
+            case 0:
+                return random.nextInt();
+            case 1:
+                return random.nextLong();
+            case 2:
+                return random.nextDouble() * 1e6 - 5e5;
+            case 3: {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(10);
+                for (int i = 0; i < length; i++) {
+                    value.append((char) (random.nextInt(3) == 0 ? random.nextInt(0x3000) : 'a' + random.nextInt(26)));
+                }
+                return value.toString();
+            }
+            case 4:
+                return random.nextBoolean();
+            case 5:
+                return null;
+            case 6: {
+                Map<String, Object> map = new LinkedHashMap<>();
+                int size = random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    map.put("k\"\\" + random.nextInt(9) + (char) random.nextInt(0x20), randomValue(random, depth + 1));
+                }
+                return map;
+            }
+            default: {
+                List<Object> list = new ArrayList<>();
+                int size = random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    list.add(randomValue(random, depth + 1));
+                }
+                return list;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fr.sandro642.github.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import fr.sandro642.github.enums.FormatType;
+import fr.sandro642.github.test.Benchmarks;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ProjectionBenchmark measures what a projection saves when a caller reads three fields of a wide response:
+ * a Jackson tree, a whole tape and a projected tape for JSON, then a whole and a projected decode for CBOR.
+ * It lives in the api package to reach the factory methods of ApiFactory; JsonTapeTest checks that the readers agree.
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class ProjectionBenchmark {
+
+    private static final int MEMBERS = 800;
+    private static final int WARMUP_ROUNDS = 300;
+    private static final int MEASURED_ROUNDS = 500;
+
+    private static final Projection PROJECTION = Projection.of("$.guild.name", "$.guild.online", "$.guild.members[0].name");
+    private static final JsonPath NAME = JsonPath.compile("$.guild.name");
+    private static final JsonPath ONLINE = JsonPath.compile("$.guild.online");
+    private static final JsonPath FIRST_MEMBER = JsonPath.compile("$.guild.members[0].name");
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    public void compareProjection() throws Exception {
+        Map<String, Object> payload = guildPayload();
+        String json = FormatType.JSON.getMapper().writeValueAsString(payload);
+        byte[] cbor = FormatType.CBOR.getMapper().writeValueAsBytes(payload);
+        System.out.printf("%d KB of JSON, %d KB of CBOR%n", json.length() / 1024, cbor.length / 1024);
+        System.out.printf("%-24s %14s%n", "parser", "read (us)");
+
+        measure("jackson tree (json)", () -> readTree(json));
+        measure("tape (json)", () -> read(json, null));
+        measure("projected tape (json)", () -> read(json, PROJECTION));
+        measure("jackson tree (cbor)", () -> read(cbor, null));
+        measure("projected stream (cbor)", () -> read(cbor, PROJECTION));
+    }
+
+    private static String readTree(String json) throws Exception {
+        Map<String, Object> tree = FormatType.JSON.getMapper().readValue(json, new TypeReference<>() {});
+        return NAME.resolve(tree) + " " + ONLINE.resolve(tree) + " " + FIRST_MEMBER.resolve(tree);
+    }
+
+    private static String read(String json, Projection projection) {
+        ApiFactory factory = ApiFactory.ofJson(200, Map.of(), null, json, projection);
+        return factory.select(NAME) + " " + factory.getInt(ONLINE) + " " + factory.select(FIRST_MEMBER);
+    }
+
+    private static String read(byte[] cbor, Projection projection) {
+        ApiFactory factory = ApiFactory.ofBytes(200, Map.of(), null, cbor, FormatType.CBOR, projection);
+        return factory.select(NAME) + " " + factory.getInt(ONLINE) + " " + factory.select(FIRST_MEMBER);
+    }
+
+    private static void measure(String name, Benchmarks.Task read) throws Exception {
+        System.out.printf("%-24s %14.1f%n", name, Benchmarks.micros(WARMUP_ROUNDS, MEASURED_ROUNDS, read));
+    }
+
+    /**
+     * Builds a guild whose name and online count surround a long list of members, so every reader has to get past
+     * the members while only the first one is kept by the projection.
+     */
+    private static Map<String, Object> guildPayload() {
+        Random random = new Random(642);
+        List<Map<String, Object>> members = new ArrayList<>();
+
+        for (int i = 0; i < MEMBERS; i++) {
+            Map<String, Object> member = new LinkedHashMap<>();
+            member.put("name", "player-" + i);
+            member.put("uuid", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            member.put("rank", random.nextInt(5));
+            member.put("joined", 1_700_000_000_000L + random.nextInt(1_000_000));
+            member.put("online", random.nextBoolean());
+            member.put("stats", Map.of("kills", random.nextInt(1000), "deaths", random.nextInt(1000), "ratio", random.nextDouble()));
+            member.put("roles", List.of("member", "builder"));
+            member.put("bio", "Member of the guild since season " + random.nextInt(10) + ", says \"hello\".");
+            members.add(member);
+        }
+
+        Map<String, Object> guild = new LinkedHashMap<>();
+        guild.put("name", "lobby-guild");
+        guild.put("members", members);
+        guild.put("online", 42);
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("guild", guild);
+        return payload;
+    }
+}
@@ -0,0 +1,53 @@
+package fr.sandro642.github.test;
+
+/**
+ * Benchmarks holds the timing loop shared by the micro-benchmarks of the tests.
+ * The timing tests are tagged "benchmark" and left out of `gradle test`; run them alone, on an idle machine,
+ * with `gradle benchmark`, and compare rows rather than absolute numbers.
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public final class Benchmarks {
+
+    /**
+     * Tag of the timing tests.
+     */
+    public static final String TAG = "benchmark";
+
+    /**
+     * Sum of the hashes of the results, so the JIT cannot drop the measured work.
+     */
+    private static volatile int sink;
+
+    private Benchmarks() {}
+
+    /**
+     * Runs a task to warm it up, then times it.
+     * @param warmupRounds the number of runs before the measure.
+     * @param measuredRounds the number of runs measured.
+     * @param task the task.
+     * @return the mean time of a run, in microseconds.
+     * @throws Exception if the task fails.
+     */
+    public static double micros(int warmupRounds, int measuredRounds, Task task) throws Exception {
+        int hash = 0;
+        for (int i = 0; i < warmupRounds; i++) {
+            hash += task.run().hashCode();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredRounds; i++) {
+            hash += task.run().hashCode();
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / measuredRounds;
+        sink += hash;
+        return micros;
+    }
+
+    /**
+     * A measured task, returning its result.
+     */
+    public interface Task {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,83 @@
+package fr.sandro642.github.test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import fr.sandro642.github.enums.FormatType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * CodecBenchmark compares the payload size and the decode cost of the wire formats against JSON,
+ * on a mostly numeric payload such as server metrics.
+ * Every format must decode to the same values as JSON; the timing is a rough micro-benchmark tagged "benchmark",
+ * run with `gradle benchmark`.
+ * @author Sandro642
+ * @version 1.0
+ */
+
+public class CodecBenchmark {
+
+    private static final int SAMPLES = 2_000;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    @Test
+    public void formatsDecodeToTheSameValues() throws Exception {
+        Map<String, Object> payload = metricsPayload();
+        Map<String, Object> json = decode(FormatType.JSON, FormatType.JSON.getMapper().writeValueAsBytes(payload));
+
+        for (FormatType format : FormatType.values()) {
+            assertEquals(json, decode(format, format.getMapper().writeValueAsBytes(payload)), format.name());
+        }
+    }
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    public void compareFormats() throws Exception {
+        Map<String, Object> payload = metricsPayload();
+        System.out.printf("%-8s %10s %8s %14s%n", "format", "bytes", "vs json", "decode (us)");
+
+        long jsonSize = FormatType.JSON.getMapper().writeValueAsBytes(payload).length;
+        for (FormatType format : FormatType.values()) {
+            byte[] encoded = format.getMapper().writeValueAsBytes(payload);
+            double micros = Benchmarks.micros(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> decode(format, encoded));
+
+            System.out.printf("%-8s %10d %7.0f%% %14.1f%n", format, encoded.length, 100.0 * encoded.length / jsonSize, micros);
+        }
+    }
+
+    private static Map<String, Object> decode(FormatType format, byte[] encoded) throws Exception {
+        return format.getMapper().readValue(encoded, new TypeReference<>() {});
+    }
+
+    /**
+     * Builds a payload of timestamped samples, as returned by a metrics route.
+     */
+    private static Map<String, Object> metricsPayload() {
+        Random random = new Random(642);
+        List<Map<String, Object>> samples = new ArrayList<>();
+        long timestamp = 1_700_000_000_000L;
+
+        for (int i = 0; i < SAMPLES; i++) {
+            Map<String, Object> sample = new LinkedHashMap<>();
+            sample.put("ts", timestamp + i * 1000L);
+            sample.put("tps", 15 + random.nextDouble() * 5);
+            sample.put("cpu", random.nextDouble());
+            sample.put("heap", random.nextInt(4096));
+            sample.put("players", random.nextInt(200));
+            samples.add(sample);
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("server", "lobby-1");
+        payload.put("samples", samples);
+        return payload;
+    }
+}
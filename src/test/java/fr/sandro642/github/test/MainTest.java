@@ -3,6 +3,7 @@ package fr.sandro642.github.test;
 import fr.sandro642.github.ConnectLib;
 
 import fr.sandro642.github.api.ApiFactory;
+import fr.sandro642.github.enums.ExecutionType;
 import fr.sandro642.github.enums.LangType;
 import fr.sandro642.github.enums.MethodType;
 import fr.sandro642.github.enums.ResourceType;
@@ -183,6 +184,28 @@ public class MainTest {
         }
     }
 
+    @Test
+    public void testExecuteBlocking() {
+        connectLib.init(ResourceType.TEST_RESOURCES, LangType.ENGLISH, TestRoutes.class);
+
+        try {
+            /**
+             * Simple blocking code, meant to run on virtual threads.
+             * JDK_HTTP_CLIENT makes the call with the JDK HttpClient instead of Reactor.
+             */
+            ApiFactory response = connectLib.JobGetInfos()
+                    .getRoutes(MethodType.GET, TestRoutes.HELLO)
+                    .executionType(ExecutionType.JDK_HTTP_CLIENT)
+                    .executeBlocking();
+
+            System.out.println("Response: " + response.display());
+            System.out.println("Status Code: " + response.getStatusCode());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     private String code_session;
 
     @Test